@@ -0,0 +1,31 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.benchmark;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * <pre>
+ * 基准测试使用的Spring Boot应用，基于H2内存数据库启动流程引擎
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@SpringBootApplication
+public class BenchmarkApplication {
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.benchmark;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wiki.capsule.flow.benchmark.entity.BenchOrder;
+import wiki.capsule.flow.utils.ClassUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 字段读写基准测试，对比ClassUtils（缓存的MethodHandle）与每次反射查找字段的FieldUtils
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ClassUtilsBenchmark {
+
+    public BenchOrder order = new BenchOrder().setAroundId(1L).setApprovalStatus("Submitted");
+
+    @Benchmark
+    public String classUtilsGetString() {
+        return ClassUtils.getStringValue(order, "approvalStatus");
+    }
+
+    @Benchmark
+    public Long classUtilsGetLong() {
+        return ClassUtils.getLongValue(order, "aroundId");
+    }
+
+    @Benchmark
+    public BenchOrder classUtilsSet() {
+        ClassUtils.setFieldValue(order, "approvalStatus", "Approved");
+        return order;
+    }
+
+    @Benchmark
+    public Object fieldUtilsGet() throws IllegalAccessException {
+        return FieldUtils.readField(order, "approvalStatus", true);
+    }
+
+    @Benchmark
+    public BenchOrder fieldUtilsSet() throws IllegalAccessException {
+        FieldUtils.writeField(order, "approvalStatus", "Approved", true);
+        return order;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import wiki.capsule.flow.benchmark.entity.BenchOrder;
+import wiki.capsule.flow.benchmark.handler.BenchAndHandler;
+import wiki.capsule.flow.benchmark.handler.BenchBranchHandler;
+import wiki.capsule.flow.benchmark.handler.BenchFlowHandler;
+import wiki.capsule.flow.benchmark.handler.BenchOrHandler;
+import wiki.capsule.flow.benchmark.handler.BenchSingleHandler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 共享的流程引擎状态，每个基准测试启动一次Spring上下文，每轮迭代清空审批日志，避免FLOW_LOG无限增长影响结果
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@State(Scope.Benchmark)
+public class FlowEngineState {
+
+    private final AtomicLong orderId = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+
+    private JdbcTemplate jdbcTemplate;
+
+    public BenchFlowHandler singleHandler;
+
+    public BenchFlowHandler orHandler;
+
+    public BenchFlowHandler andHandler;
+
+    public BenchFlowHandler branchHandler;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        singleHandler = context.getBean(BenchSingleHandler.class);
+        orHandler = context.getBean(BenchOrHandler.class);
+        andHandler = context.getBean(BenchAndHandler.class);
+        branchHandler = context.getBean(BenchBranchHandler.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearLogs() {
+        jdbcTemplate.execute("TRUNCATE TABLE flow_log");
+        jdbcTemplate.execute("TRUNCATE TABLE flow_round");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    /**
+     * 创建一张已初始化审批状态的新单据
+     *
+     * @param handler 流程处理器
+     * @return BenchOrder
+     */
+    public BenchOrder newOrder(BenchFlowHandler handler) {
+        BenchOrder order = new BenchOrder().setId(orderId.incrementAndGet()).setType("B");
+        handler.initApprovalStatus(order);
+        return order;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wiki.capsule.flow.benchmark.entity.BenchOrder;
+import wiki.capsule.flow.enums.TodoEnum;
+import wiki.capsule.flow.vo.FlowRootVo;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 待办查询和流程元数据基准测试
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HandlerQueryBenchmark {
+
+    public Set<String> roles = Collections.singleton("roleB");
+
+    @Benchmark
+    public Set<String> todoStatus(FlowEngineState engine) {
+        return engine.andHandler.getTodoStatus(TodoEnum.ONLY_PENDING_APPROVAL, roles);
+    }
+
+    @Benchmark
+    public String todoSql(FlowEngineState engine) {
+        Set<String> status = engine.andHandler.getTodoStatus(TodoEnum.ALL, roles);
+        return engine.andHandler.todoSql(status, "t.");
+    }
+
+    @Benchmark
+    public FlowRootVo flowMetaInfoV1(FlowEngineState engine) {
+        BenchOrder order = engine.newOrder(engine.andHandler);
+        return engine.andHandler.getFlowMetaInfoV1(order);
+    }
+
+    @Benchmark
+    public FlowRootVo flowMetaInfoV2(FlowEngineState engine) {
+        BenchOrder order = engine.newOrder(engine.branchHandler);
+        return engine.branchHandler.getFlowMetaInfoV2(order);
+    }
+}
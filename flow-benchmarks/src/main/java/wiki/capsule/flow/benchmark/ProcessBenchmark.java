@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wiki.capsule.flow.benchmark.entity.BenchOrder;
+import wiki.capsule.flow.enums.JoinStrategy;
+import wiki.capsule.flow.enums.StatusFormat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * process()端到端基准测试，每次调用完成一张单据从提交到审批通过的完整回合
+ * 包括查询当前环节、权限校验、状态流转、规则解析以及审批日志和回合的写入
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProcessBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"LOG_QUERY", "STATUS_JSON"})
+    public JoinStrategy joinStrategy;
+
+    @Param({"JSON", "BITSET"})
+    public StatusFormat statusFormat;
+
+    @Setup
+    public void setup(FlowEngineState engine) {
+        engine.andHandler.setJoinStrategy(joinStrategy);
+        engine.singleHandler.setStatusFormat(statusFormat);
+        engine.orHandler.setStatusFormat(statusFormat);
+        engine.andHandler.setStatusFormat(statusFormat);
+        engine.branchHandler.setStatusFormat(statusFormat);
+    }
+
+    @Benchmark
+    public BenchOrder singleFlow(FlowEngineState engine) {
+        BenchOrder order = engine.newOrder(engine.singleHandler);
+        engine.singleHandler.process(order, "Submit", "submit", "role1", true, true);
+        engine.singleHandler.process(order, "Approve", "approve", "role2", false, false);
+        engine.singleHandler.process(order, "Approve", "approve", "role3", false, false);
+        return order;
+    }
+
+    @Benchmark
+    public BenchOrder orFlow(FlowEngineState engine) {
+        BenchOrder order = engine.newOrder(engine.orHandler);
+        engine.orHandler.process(order, "Submit", "submit", "role1", true, true);
+        engine.orHandler.process(order, "Approve", "approve", "roleB", false, false);
+        return order;
+    }
+
+    @Benchmark
+    public BenchOrder andFlow(FlowEngineState engine) {
+        BenchOrder order = engine.newOrder(engine.andHandler);
+        engine.andHandler.process(order, "Submit", "submit", "role1", true, true);
+        engine.andHandler.process(order, "Approve", "approve", "roleA", false, false);
+        engine.andHandler.process(order, "Approve", "approve", "roleB", false, false);
+        engine.andHandler.process(order, "Approve", "approve", "roleC", false, false);
+        engine.andHandler.process(order, "Approve", "approve", "roleD", false, false);
+        return order;
+    }
+
+    @Benchmark
+    public BenchOrder branchFlow(FlowEngineState engine) {
+        BenchOrder order = engine.newOrder(engine.branchHandler);
+        engine.branchHandler.process(order, "Submit", "submit", "role1", true, true);
+        engine.branchHandler.process(order, "Approve", "approve", "roleB", false, false);
+        return order;
+    }
+
+    /**
+     * 批量处理100张并签单据的完整回合，与andFlow对比
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<BenchOrder> andFlowBatch(FlowEngineState engine) {
+        List<BenchOrder> orders = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            orders.add(engine.newOrder(engine.andHandler));
+        }
+        engine.andHandler.processBatch(orders, "Submit", "submit", "role1", true, true);
+        engine.andHandler.processBatch(orders, "Approve", "approve", "roleA");
+        engine.andHandler.processBatch(orders, "Approve", "approve", "roleB");
+        engine.andHandler.processBatch(orders, "Approve", "approve", "roleC");
+        engine.andHandler.processBatch(orders, "Approve", "approve", "roleD");
+        return orders;
+    }
+
+    /**
+     * 只测试并签时查询当前环节，不包括权限校验和日志写入
+     */
+    @Benchmark
+    public List<?> andFindCurrentFlows(FlowEngineState engine) {
+        BenchOrder order = engine.newOrder(engine.andHandler);
+        String approvalStatusJson = statusFormat == StatusFormat.BITSET ? "1010" : "{\"A\":1,\"B\":0,\"C\":1,\"D\":0}";
+        order.setApprovalStatus("A&&B&&C&&D").setApprovalStatusJson(approvalStatusJson).setAroundId(0L);
+        return engine.andHandler.findCurrentFlows(order, order.getApprovalStatus(), "Approve", order.getAroundId());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import wiki.capsule.flow.benchmark.entity.BenchOrder;
+import wiki.capsule.flow.enums.RuleEngine;
+import wiki.capsule.flow.rule.RuleCompiler;
+import wiki.capsule.flow.utils.RuleUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 规则解析基准测试：Beetl模板渲染与编译后的规则求值
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RuleBenchmark {
+
+    private static final String RULE = "<% if(vo.type=='A'){print(\"A\");}else if(vo.type=='B'){print(\"B\");}else{print(\"C\");} %>";
+
+    public BenchOrder order = new BenchOrder().setType("B");
+
+    @Benchmark
+    public String render() {
+        return RuleUtils.render(RULE, "vo", order);
+    }
+
+    @Benchmark
+    public String evaluateCompiled() {
+        return RuleCompiler.compile(RULE).evaluate("vo", order);
+    }
+
+    @Benchmark
+    public String evaluate() {
+        return RuleUtils.evaluate(RuleEngine.COMPILED, RULE, "vo", order);
+    }
+
+    @Benchmark
+    public String findNextStatus(FlowEngineState engine) {
+        return engine.branchHandler.findNextStatus(order, RULE);
+    }
+}
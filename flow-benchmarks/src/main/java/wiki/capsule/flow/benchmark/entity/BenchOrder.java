@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.benchmark.entity;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * <pre>
+ * 基准测试实体，只保存在内存中
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Data
+@Accessors(chain = true)
+public class BenchOrder {
+
+    private Long id;
+
+    private String type;
+
+    private Long aroundId;
+
+    private String approvalStatus;
+
+    private String approvalStatusJson;
+
+    private String lastSubmitMessage;
+
+    private String lastSubmitBy;
+
+    private LocalDateTime lastSubmitDate;
+
+    private String lastAuditMessage;
+
+    private String lastAuditBy;
+
+    private LocalDateTime lastAuditDate;
+}
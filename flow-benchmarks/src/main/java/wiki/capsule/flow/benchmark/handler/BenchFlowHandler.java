@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.benchmark.handler;
+
+import com.alibaba.fastjson.JSONArray;
+import org.apache.commons.lang3.StringUtils;
+import wiki.capsule.flow.benchmark.entity.BenchOrder;
+import wiki.capsule.flow.entity.FlowBasic;
+import wiki.capsule.flow.enums.JoinStrategy;
+import wiki.capsule.flow.enums.StatusFormat;
+import wiki.capsule.flow.handler.AbstractFlowHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <pre>
+ * 基准测试处理器基类，用户名即角色名，并开放部分protected方法供基准测试直接调用
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public abstract class BenchFlowHandler extends AbstractFlowHandler<BenchOrder> {
+
+    private JoinStrategy joinStrategy;
+
+    private StatusFormat statusFormat;
+
+    @Override
+    protected List<FlowBasic> authPermission(List<FlowBasic> currentFlows, String user) {
+        List<FlowBasic> canHandledFlows = new ArrayList<>();
+        for (FlowBasic flowBasic : currentFlows) {
+            if (StringUtils.isBlank(flowBasic.getHandleRoles())) {
+                continue;
+            }
+            if (JSONArray.parseArray(flowBasic.getHandleRoles()).contains(user)) {
+                canHandledFlows.add(flowBasic);
+            }
+        }
+        return canHandledFlows;
+    }
+
+    @Override
+    public String startProcess(List<FlowBasic> currentFlows, List<FlowBasic> canHandleFlows, BenchOrder bizEntity) {
+        return super.startProcess(currentFlows, canHandleFlows, bizEntity);
+    }
+
+    @Override
+    public String findNextStatus(BenchOrder bizEntity, String nextStatus) {
+        return super.findNextStatus(bizEntity, nextStatus);
+    }
+
+    @Override
+    public List<FlowBasic> findCurrentFlows(BenchOrder bizEntity, String approvalStatus, String action, Long roundId) {
+        return super.findCurrentFlows(bizEntity, approvalStatus, action, roundId);
+    }
+
+    @Override
+    public JoinStrategy getJoinStrategy() {
+        return joinStrategy == null ? super.getJoinStrategy() : joinStrategy;
+    }
+
+    public void setJoinStrategy(JoinStrategy joinStrategy) {
+        this.joinStrategy = joinStrategy;
+    }
+
+    @Override
+    public StatusFormat getStatusFormat() {
+        return statusFormat == null ? super.getStatusFormat() : statusFormat;
+    }
+
+    public void setStatusFormat(StatusFormat statusFormat) {
+        this.statusFormat = statusFormat;
+    }
+
+    @Override
+    protected String getEntityName() {
+        return "BENCH_ORDER";
+    }
+}
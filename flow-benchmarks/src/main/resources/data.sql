@@ -0,0 +1,36 @@
+-- 单签：Pending Submit -> Submitted -> A -> Approved
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_SINGLE_FLOW', 'BENCH_ORDER', 'Pending Submit', 'Submit', 'Submitted', '["role1"]', 1, 0);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_SINGLE_FLOW', 'BENCH_ORDER', 'Submitted', 'Approve', 'A', '["role2"]', 2, 0);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_SINGLE_FLOW', 'BENCH_ORDER', 'Submitted', 'Reject', 'Pending Submit', '["role2"]', -1, 0);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_SINGLE_FLOW', 'BENCH_ORDER', 'A', 'Approve', 'Approved', '["role3"]', 3, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_SINGLE_FLOW', 'BENCH_ORDER', 'A', 'Reject', 'Rejected', '["role3"]', -2, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_SINGLE_FLOW', 'BENCH_ORDER', 'Rejected', 'Submit', 'Submitted', '["role1"]', 0, 0);
+
+-- 会签：Pending Submit -> A||B||C -> Approved
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_OR_FLOW', 'BENCH_ORDER', 'Pending Submit', 'Submit', 'A||B||C', '["role1"]', 1, 0);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_OR_FLOW', 'BENCH_ORDER', 'A', 'Approve', 'Approved', '["roleA"]', 2, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_OR_FLOW', 'BENCH_ORDER', 'B', 'Approve', 'Approved', '["roleB"]', 3, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_OR_FLOW', 'BENCH_ORDER', 'C', 'Approve', 'Approved', '["roleC"]', 4, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_OR_FLOW', 'BENCH_ORDER', 'A', 'Reject', 'Rejected', '["roleA"]', -1, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_OR_FLOW', 'BENCH_ORDER', 'B', 'Reject', 'Rejected', '["roleB"]', -2, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_OR_FLOW', 'BENCH_ORDER', 'C', 'Reject', 'Rejected', '["roleC"]', -3, -1);
+
+-- 并签：Pending Submit -> A&&B&&C&&D -> Approved
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'Pending Submit', 'Submit', 'A&&B&&C&&D', '["role1"]', 1, 0);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'A', 'Approve', 'Approved', '["roleA"]', 2, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'B', 'Approve', 'Approved', '["roleB"]', 3, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'C', 'Approve', 'Approved', '["roleC"]', 4, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'D', 'Approve', 'Approved', '["roleD"]', 5, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'A', 'Reject', 'Rejected', '["roleA"]', -1, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'B', 'Reject', 'Rejected', '["roleB"]', -2, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'C', 'Reject', 'Rejected', '["roleC"]', -3, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_AND_FLOW', 'BENCH_ORDER', 'D', 'Reject', 'Rejected', '["roleD"]', -4, -1);
+
+-- 多分支：Pending Submit按type转向A、B或C -> Approved
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, NEXT_STATUS_ALIAS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_BRANCH_FLOW', 'BENCH_ORDER', 'Pending Submit', 'Submit', '<% if(vo.type==''A''){print("A");}else if(vo.type==''B''){print("B");}else{print("C");} %>', '[{"next_step":"A","next_status":"A","label":"A类型"},{"next_step":"B","next_status":"B","label":"B类型"},{"next_step":"C","next_status":"C","label":"C类型"}]', '["role1"]', 1, 0);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_BRANCH_FLOW', 'BENCH_ORDER', 'A', 'Approve', 'Approved', '["roleA"]', 2, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_BRANCH_FLOW', 'BENCH_ORDER', 'B', 'Approve', 'Approved', '["roleB"]', 3, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_BRANCH_FLOW', 'BENCH_ORDER', 'C', 'Approve', 'Approved', '["roleC"]', 4, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_BRANCH_FLOW', 'BENCH_ORDER', 'A', 'Reject', 'Rejected', '["roleA"]', -1, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_BRANCH_FLOW', 'BENCH_ORDER', 'B', 'Reject', 'Rejected', '["roleB"]', -2, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('BENCH_BRANCH_FLOW', 'BENCH_ORDER', 'C', 'Reject', 'Rejected', '["roleC"]', -3, -1);
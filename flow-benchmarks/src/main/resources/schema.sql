@@ -0,0 +1,117 @@
+DROP TABLE IF EXISTS flow_basic;
+CREATE TABLE flow_basic (
+  ID int NOT NULL AUTO_INCREMENT,
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  PREV_STATUS varchar(100) NOT NULL,
+  PREV_STATUS_ALIAS varchar(100) DEFAULT NULL,
+  ACTION varchar(50) NOT NULL,
+  NEXT_STATUS varchar(10000) NOT NULL,
+  NEXT_STATUS_ALIAS varchar(1000) DEFAULT NULL,
+  HANDLE_ROLES varchar(300) DEFAULT NULL,
+  TASK_ORDER int NOT NULL DEFAULT 0,
+  LAST_TASK int NOT NULL DEFAULT 0,
+  DELETED int NOT NULL DEFAULT 0,
+  CREATED_BY varchar(50) DEFAULT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  UPDATED_BY varchar(50) DEFAULT NULL,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+CREATE INDEX IDX_FLOW_BASIC_FLOW ON flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION);
+
+DROP TABLE IF EXISTS flow_log;
+CREATE TABLE flow_log (
+  ID bigint NOT NULL AUTO_INCREMENT,
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  PREV_STATUS varchar(100) NOT NULL,
+  COMMENTS varchar(1000) DEFAULT NULL,
+  ACTION varchar(50) NOT NULL,
+  NEXT_STATUS varchar(100) NOT NULL,
+  ORDER_ID bigint NOT NULL,
+  ROUND_ID bigint NOT NULL,
+  DELETED int NOT NULL DEFAULT 0,
+  CREATED_BY varchar(50) DEFAULT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  UPDATED_BY varchar(50) DEFAULT NULL,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+CREATE INDEX IDX_FLOW_LOG_ROUND ON flow_log (ROUND_ID, ACTION, PREV_STATUS);
+CREATE INDEX IDX_FLOW_LOG_ORDER ON flow_log (FLOW_NAME, ENTITY_NAME, ORDER_ID, ROUND_ID, CREATE_TIME);
+CREATE INDEX IDX_FLOW_LOG_ARCHIVE_SCAN ON flow_log (FLOW_NAME, ENTITY_NAME, NEXT_STATUS, CREATE_TIME);
+
+DROP TABLE IF EXISTS flow_log_archive;
+CREATE TABLE flow_log_archive (
+  ID bigint NOT NULL,
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  PREV_STATUS varchar(100) NOT NULL,
+  COMMENTS varchar(1000) DEFAULT NULL,
+  ACTION varchar(50) NOT NULL,
+  NEXT_STATUS varchar(100) NOT NULL,
+  ORDER_ID bigint NOT NULL,
+  ROUND_ID bigint NOT NULL,
+  DELETED int NOT NULL DEFAULT 0,
+  CREATED_BY varchar(50) DEFAULT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  UPDATED_BY varchar(50) DEFAULT NULL,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+CREATE INDEX IDX_FLOW_LOG_ARCHIVE_ORDER ON flow_log_archive (FLOW_NAME, ENTITY_NAME, ORDER_ID, ROUND_ID, CREATE_TIME);
+
+DROP TABLE IF EXISTS flow_round;
+CREATE TABLE flow_round (
+  ID bigint NOT NULL AUTO_INCREMENT,
+  CHANGE_RECORD varchar(10000) DEFAULT NULL,
+  DELETED int NOT NULL DEFAULT 0,
+  CREATED_BY varchar(50) DEFAULT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  UPDATED_BY varchar(50) DEFAULT NULL,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+
+DROP TABLE IF EXISTS flow_sequence;
+CREATE TABLE flow_sequence (
+  NAME varchar(64) NOT NULL,
+  NEXT_VALUE bigint NOT NULL,
+  PRIMARY KEY (NAME)
+);
+
+DROP TABLE IF EXISTS flow_pending_task;
+CREATE TABLE flow_pending_task (
+  ID bigint NOT NULL AUTO_INCREMENT,
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  ORDER_ID bigint NOT NULL,
+  ROUND_ID bigint DEFAULT NULL,
+  PENDING_STATUS varchar(100) NOT NULL,
+  HANDLE_ROLE varchar(100) NOT NULL,
+  SUBMIT_TASK int NOT NULL DEFAULT 0,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+CREATE INDEX IDX_FLOW_PENDING_TASK_ROLE ON flow_pending_task (FLOW_NAME, ENTITY_NAME, HANDLE_ROLE, SUBMIT_TASK, ORDER_ID);
+CREATE INDEX IDX_FLOW_PENDING_TASK_ORDER ON flow_pending_task (ORDER_ID, FLOW_NAME, ENTITY_NAME);
+
+DROP TABLE IF EXISTS flow_definition_version;
+CREATE TABLE flow_definition_version (
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  VERSION bigint NOT NULL DEFAULT 0,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (FLOW_NAME, ENTITY_NAME)
+);
+
+DROP TABLE IF EXISTS flow_definition_snapshot;
+CREATE TABLE flow_definition_snapshot (
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  VERSION bigint NOT NULL,
+  DEFINITION clob NOT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (FLOW_NAME, ENTITY_NAME, VERSION)
+);
@@ -18,6 +18,14 @@ package wiki.capsule.flow;
 
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import wiki.capsule.flow.enums.ConcurrencyStrategy;
+import wiki.capsule.flow.enums.JoinStrategy;
+import wiki.capsule.flow.enums.OverflowPolicy;
+import wiki.capsule.flow.enums.RoundIdStrategy;
+import wiki.capsule.flow.enums.RuleEngine;
+import wiki.capsule.flow.enums.StatusFormat;
+
+import java.time.Duration;
 
 /**
  * <p>
@@ -31,4 +39,326 @@ public class FlowProperties {
 
     private boolean enable;
 
+    /**
+     * 流程定义（FLOW_BASIC）内存缓存配置
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 并签时判断已处理环节的策略，默认查询审批日志
+     */
+    private JoinStrategy joinStrategy = JoinStrategy.LOG_QUERY;
+
+    /**
+     * approvalStatusJson字段的写入格式，默认JSON，读取时两种格式都兼容
+     */
+    private StatusFormat statusFormat = StatusFormat.JSON;
+
+    /**
+     * 规则表达式（Beetl）配置
+     */
+    private Rule rule = new Rule();
+
+    /**
+     * Micrometer度量配置
+     */
+    private Metrics metrics = new Metrics();
+
+    /**
+     * 待办索引表（FLOW_PENDING_TASK）配置
+     */
+    private PendingTask pendingTask = new PendingTask();
+
+    /**
+     * 审批日志（FLOW_LOG）写入配置
+     */
+    private LogWriter logWriter = new LogWriter();
+
+    /**
+     * 同一单据并发处理时的并发控制配置
+     */
+    private Concurrency concurrency = new Concurrency();
+
+    /**
+     * process()事务工作单元配置
+     */
+    private UnitOfWork unitOfWork = new UnitOfWork();
+
+    /**
+     * 审批回合ID生成配置
+     */
+    private RoundId roundId = new RoundId();
+
+    /**
+     * 流程元数据查询配置
+     */
+    private MetaInfo metaInfo = new MetaInfo();
+
+    /**
+     * 只读副本（读写分离）配置
+     */
+    private Replica replica = new Replica();
+
+    /**
+     * 数据库表结构检查配置
+     */
+    private Schema schema = new Schema();
+
+    /**
+     * 审批日志冷热归档配置
+     */
+    private Archive archive = new Archive();
+
+    /**
+     * 启动预热及流程配置检查
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    @Data
+    public static class Cache {
+        /**
+         * 是否开启流程定义缓存，关闭后每次调用都会重新查询FLOW_BASIC
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓存过期时间，为空或0表示永不过期，只能通过显式失效刷新
+         */
+        private Duration ttl;
+
+        /**
+         * 轮询FLOW_DEFINITION_VERSION的间隔，用于多节点间同步流程定义的修改，为空或0表示不轮询，开启时需要创建flow_definition_version表
+         */
+        private Duration versionPollInterval;
+
+        /**
+         * 是否按版本保存流程定义快照，进行中的回合按开始时的版本流转，需要创建flow_definition_version、flow_definition_snapshot表，
+         * 并在处理器中复写getFlowVersionField
+         */
+        private boolean versioned = false;
+
+        /**
+         * 内存中保留的历史版本流程定义数量
+         */
+        private int historySize = 16;
+    }
+
+    @Data
+    public static class Rule {
+        /**
+         * 规则表达式编译结果的最大缓存数量，超过后淘汰最久未使用的表达式
+         */
+        private int cacheSize = 512;
+
+        /**
+         * 加载流程定义时是否按默认规则引擎预编译其中的规则表达式，启动预热时所有处理器的流程定义都会被加载
+         */
+        private boolean prewarm = true;
+
+        /**
+         * 默认的规则引擎，处理器可以复写getRuleEngine按流程单独指定
+         */
+        private RuleEngine engine = RuleEngine.BEETL;
+    }
+
+    @Data
+    public static class Metrics {
+        /**
+         * 容器中存在MeterRegistry时是否记录流程处理和查询的耗时及错误次数
+         */
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class PendingTask {
+        /**
+         * 是否在处理后维护FLOW_PENDING_TASK待办索引表，开启前需要先创建该表
+         */
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class LogWriter {
+        /**
+         * 是否异步批量写入审批日志，开启后审批日志先进入内存队列，由后台线程合并为多行insert写入
+         * 处于事务中时提交后才入队；尚未落库的日志只有当前节点可见，开启后并签总是按STATUS_JSON判断已处理环节
+         */
+        private boolean async = false;
+
+        /**
+         * 内存队列容量
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * 单次insert的最大行数
+         */
+        private int flushSize = 500;
+
+        /**
+         * 未达到flushSize时的最长等待时间
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * 队列已满时的处理策略
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+    }
+
+    @Data
+    public static class Concurrency {
+        /**
+         * 并发控制策略，默认不做控制；LOCK和OPTIMISTIC都需要处理器复写reloadEntity
+         */
+        private ConcurrencyStrategy strategy = ConcurrencyStrategy.NONE;
+
+        /**
+         * LOCK策略的分段锁数量，会向上取整为2的幂
+         */
+        private int lockStripes = 256;
+
+        /**
+         * LOCK策略获取锁的最长等待时间
+         */
+        private Duration lockTimeout = Duration.ofSeconds(10);
+
+        /**
+         * OPTIMISTIC策略版本冲突后的最大重试次数，调用方已开启事务时不重试，直接抛出FlowConflictException
+         */
+        private int maxRetries = 3;
+    }
+
+    @Data
+    public static class UnitOfWork {
+        /**
+         * 是否在一个事务中执行process()，处理结束时逐条执行单据更新以准确判断冲突，审批日志通过JDBC批量一次写入，需要容器中存在PlatformTransactionManager
+         */
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class RoundId {
+        /**
+         * 回合ID生成策略，默认数据库自增；HILO需要先创建FLOW_SEQUENCE表，并且所有节点同时切换，不能滚动升级
+         */
+        private RoundIdStrategy strategy = RoundIdStrategy.AUTO_INCREMENT;
+
+        /**
+         * HILO策略每次租用的号段大小
+         */
+        private int blockSize = 100;
+
+        /**
+         * TIME策略的workerId，取值0-1023，多实例部署时每个实例需要不同
+         */
+        private long workerId = 0;
+    }
+
+    @Data
+    public static class MetaInfo {
+        /**
+         * getFlowMetaInfo(List)并行求值分支规则的线程数，小于等于0时取CPU核数
+         */
+        private int parallelism = 0;
+    }
+
+    @Data
+    public static class Replica {
+        /**
+         * 是否把审批流引擎的只读查询（审批历史、流程元数据、待办、权限校验）路由到只读副本
+         */
+        private boolean enabled = false;
+
+        /**
+         * 被包装为路由数据源的主数据源Bean名称
+         */
+        private String primaryBeanName = "dataSource";
+
+        /**
+         * 副本连接配置，容器中存在名为flowReplicaDataSource的Bean时忽略
+         */
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private String driverClassName;
+
+        /**
+         * 副本允许的最大复制延迟，同一线程在process()等写操作后的这段时间内仍然读主库
+         */
+        private Duration maxStaleness = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Schema {
+        /**
+         * 启动完成后是否检查审批流查询所需的索引是否存在，缺失时打印告警及建索引语句
+         */
+        private boolean checkIndexes = false;
+    }
+
+    @Data
+    public static class Archive {
+        /**
+         * 是否启用审批日志归档，开启后历史查询合并flow_log和flow_log_archive，需要先创建flow_log_archive表
+         */
+        private boolean enabled = false;
+
+        /**
+         * 是否在当前实例运行定时归档任务，多实例部署时可以只在一个实例上开启
+         */
+        private boolean jobEnabled = true;
+
+        /**
+         * 定时归档任务的执行间隔
+         */
+        private Duration interval = Duration.ofHours(1);
+
+        /**
+         * 回合进入最终状态超过这段时间后才归档
+         */
+        private Duration minAge = Duration.ofDays(30);
+
+        /**
+         * 每个事务移动的回合数
+         */
+        private int chunkSize = 200;
+
+        /**
+         * 两个事务之间的暂停时间，避免长时间占用数据库
+         */
+        private Duration chunkPause = Duration.ofMillis(500);
+
+        /**
+         * 每个流程单次执行最多移动的批次数，剩余的回合留到下次执行
+         */
+        private int maxChunksPerRun = 1000;
+    }
+
+    @Data
+    public static class WarmUp {
+        /**
+         * 启动完成后是否并行加载所有处理器的流程定义、预编译规则表达式并检查流程配置
+         */
+        private boolean enabled = true;
+
+        /**
+         * 检查出配置问题时是否启动失败，默认只打印告警
+         */
+        private boolean failFast = false;
+
+        /**
+         * 并行预热的线程数，小于等于0时取CPU核数，不超过处理器数量
+         */
+        private int parallelism = 0;
+
+        /**
+         * 等待所有处理器预热完成的最长时间
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+    }
+
 }
@@ -16,14 +16,31 @@
 
 package wiki.capsule.flow;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import wiki.capsule.flow.metrics.FlowMetrics;
+import wiki.capsule.flow.metrics.MicrometerFlowMetrics;
+import wiki.capsule.flow.support.FlowHandlerWarmer;
+import wiki.capsule.flow.support.FlowIndexChecker;
+import wiki.capsule.flow.support.FlowLogArchiver;
+import wiki.capsule.flow.support.FlowRoutingDataSourcePostProcessor;
+import wiki.capsule.flow.support.HiLoRoundIdGenerator;
+import wiki.capsule.flow.support.RoundIdGenerator;
+import wiki.capsule.flow.support.TimeOrderedRoundIdGenerator;
 
 import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -37,7 +54,101 @@ import javax.sql.DataSource;
 @MapperScan({"wiki.capsule.flow.**.mapper"})
 @ConditionalOnProperty(value = "capsule.flow.enable", havingValue = "true")
 @ConditionalOnClass(DataSource.class)
+@AutoConfigureAfter(name = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 public class FlowServiceAutoConfiguration {
 
+    public static final String META_INFO_EXECUTOR = "flowMetaInfoExecutor";
 
+    /**
+     * 没有可用的MeterRegistry或关闭了capsule.flow.metrics.enabled时不记录任何指标
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public FlowMetrics flowMetrics() {
+        return FlowMetrics.NOOP;
+    }
+
+    /**
+     * 按capsule.flow.round-id.strategy创建回合ID生成器，容器中已有自定义实现时不创建
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public RoundIdGenerator roundIdGenerator(FlowProperties flowProperties, DataSource dataSource) {
+        FlowProperties.RoundId roundId = flowProperties.getRoundId();
+        switch (roundId.getStrategy()) {
+            case HILO:
+                return new HiLoRoundIdGenerator(dataSource, roundId.getBlockSize());
+            case TIME:
+                return new TimeOrderedRoundIdGenerator(roundId.getWorkerId());
+            default:
+                return RoundIdGenerator.AUTO_INCREMENT;
+        }
+    }
+
+    /**
+     * getFlowMetaInfo(List)并行求值分支规则的线程池，容器中已有同名Bean时不创建
+     */
+    @Bean(name = META_INFO_EXECUTOR, destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(name = META_INFO_EXECUTOR)
+    public ExecutorService flowMetaInfoExecutor(FlowProperties flowProperties) {
+        int parallelism = flowProperties.getMetaInfo().getParallelism();
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "capsule-flow-meta-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 开启capsule.flow.schema.check-indexes时，启动完成后检查审批流查询所需的索引
+     */
+    @Bean
+    @ConditionalOnProperty(value = "capsule.flow.schema.check-indexes", havingValue = "true")
+    public FlowIndexChecker flowIndexChecker(DataSource dataSource) {
+        return new FlowIndexChecker(dataSource);
+    }
+
+    /**
+     * 开启capsule.flow.archive.enabled时，启动完成后定时归档已结束回合的审批日志
+     */
+    @Bean
+    @ConditionalOnProperty(value = "capsule.flow.archive.enabled", havingValue = "true")
+    public FlowLogArchiver flowLogArchiver(FlowProperties flowProperties) {
+        return new FlowLogArchiver(flowProperties.getArchive());
+    }
+
+    /**
+     * 启动完成后并行预热所有处理器并检查流程配置，capsule.flow.warm-up.enabled=false时关闭
+     */
+    @Bean
+    @ConditionalOnProperty(value = "capsule.flow.warm-up.enabled", havingValue = "true", matchIfMissing = true)
+    public FlowHandlerWarmer flowHandlerWarmer(FlowProperties flowProperties) {
+        return new FlowHandlerWarmer(flowProperties.getWarmUp());
+    }
+
+    /**
+     * 开启capsule.flow.replica.enabled时把主数据源包装为FlowRoutingDataSource，引擎的只读查询读取副本
+     */
+    @Bean
+    @ConditionalOnProperty(value = "capsule.flow.replica.enabled", havingValue = "true")
+    public static FlowRoutingDataSourcePostProcessor flowRoutingDataSourcePostProcessor() {
+        return new FlowRoutingDataSourcePostProcessor();
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(value = "capsule.flow.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    static class MicrometerFlowMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public FlowMetrics micrometerFlowMetrics(MeterRegistry meterRegistry) {
+            return new MicrometerFlowMetrics(meterRegistry);
+        }
+    }
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import org.apache.commons.lang3.StringUtils;
+import wiki.capsule.flow.entity.FlowBasic;
+import wiki.capsule.flow.enums.TodoEnum;
+import wiki.capsule.flow.graph.FlowGraph;
+import wiki.capsule.flow.vo.FlowMetaVo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * <pre>
+ * 单条审批流（flowName + entityName）的流程定义，加载后不可变
+ * 按taskOrder、lastTask建立索引，并编译为FlowGraph供状态流转查找，避免每次处理都查询FLOW_BASIC
+ * 同时预先解析handleRoles，按TodoEnum建立角色到待办状态的映射，getTodoStatus只需按角色合并集合
+ * 只依赖流程定义的V1流程元数据在首次访问时构建并缓存，流程定义重新加载后随旧实例一起失效
+ * 注意：返回的FlowBasic为缓存中的共享实例，调用方不要修改其属性；处理器交给authPermission及process()调用方的是副本
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class FlowDefinition {
+
+    private final String flowName;
+
+    private final String entityName;
+
+    private final FlowGraph graph;
+
+    private final Map<Integer, List<FlowBasic>> taskOrderIndex = new HashMap<>();
+
+    private final Map<Integer, List<FlowBasic>> lastTaskIndex = new HashMap<>();
+
+    private final Map<FlowBasic, List<String>> handleRoles = new IdentityHashMap<>();
+
+    private final Map<TodoEnum, Set<String>> todoStatus = new EnumMap<>(TodoEnum.class);
+
+    private final Map<TodoEnum, Map<String, Set<String>>> roleTodoStatus = new EnumMap<>(TodoEnum.class);
+
+    private final long loadTime;
+
+    private final long version;
+
+    private volatile List<FlowMetaVo> flowMetaInfoV1;
+
+    public FlowDefinition(String flowName, String entityName, List<FlowBasic> flowBasics) {
+        this(flowName, entityName, flowBasics, 0L);
+    }
+
+    /**
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @param flowBasics 审批环节
+     * @param version    加载时FLOW_DEFINITION_VERSION中的版本号，未开启版本轮询时为0
+     */
+    public FlowDefinition(String flowName, String entityName, List<FlowBasic> flowBasics, long version) {
+        this.flowName = flowName;
+        this.version = version;
+        this.entityName = entityName;
+        this.graph = new FlowGraph(flowBasics);
+        for (FlowBasic flowBasic : graph.getFlowBasics()) {
+            if (flowBasic.getTaskOrder() != null) {
+                taskOrderIndex.computeIfAbsent(flowBasic.getTaskOrder(), k -> new ArrayList<>()).add(flowBasic);
+            }
+            if (flowBasic.getLastTask() != null) {
+                lastTaskIndex.computeIfAbsent(flowBasic.getLastTask(), k -> new ArrayList<>()).add(flowBasic);
+            }
+            handleRoles.put(flowBasic, parseRoles(flowBasic.getHandleRoles()));
+        }
+        for (TodoEnum todoEnum : TodoEnum.values()) {
+            Set<String> statuses = new HashSet<>();
+            Map<String, Set<String>> roleStatuses = new HashMap<>();
+            for (FlowBasic flowBasic : graph.getFlowBasics()) {
+                if (StringUtils.isBlank(flowBasic.getHandleRoles()) || !isTodoTask(todoEnum, flowBasic.getTaskOrder())) {
+                    continue;
+                }
+                statuses.add(flowBasic.getPrevStatus());
+                for (String role : handleRoles.get(flowBasic)) {
+                    roleStatuses.computeIfAbsent(role, k -> new HashSet<>()).add(flowBasic.getPrevStatus());
+                }
+            }
+            roleStatuses.replaceAll((role, roleStatus) -> Collections.unmodifiableSet(roleStatus));
+            todoStatus.put(todoEnum, Collections.unmodifiableSet(statuses));
+            roleTodoStatus.put(todoEnum, roleStatuses);
+        }
+        this.loadTime = System.currentTimeMillis();
+    }
+
+    private static List<String> parseRoles(String handleRoles) {
+        if (StringUtils.isBlank(handleRoles)) {
+            return Collections.emptyList();
+        }
+        JSONArray array = JSON.parseArray(handleRoles);
+        List<String> roles = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            String role = array.getString(i);
+            if (role != null) {
+                roles.add(role);
+            }
+        }
+        return Collections.unmodifiableList(roles);
+    }
+
+    /**
+     * 判断审批环节是否属于指定的待办类型：taskOrder为0或1的是待提交环节，其余为待审批环节
+     *
+     * @param todoEnum  待办类型
+     * @param taskOrder taskOrder
+     * @return true表示属于
+     */
+    public static boolean isTodoTask(TodoEnum todoEnum, Integer taskOrder) {
+        if (todoEnum == TodoEnum.ONLY_PENDING_SUBMIT) {
+            return taskOrder != null && (taskOrder == 0 || taskOrder == 1);
+        } else if (todoEnum == TodoEnum.ONLY_PENDING_APPROVAL) {
+            return taskOrder != null && taskOrder != 0 && taskOrder != 1;
+        }
+        return true;
+    }
+
+    /**
+     * 按上一个状态和审批动作查找审批环节，action为空时不限制审批动作，结果按ID升序排列
+     *
+     * @param prevStatuses 上一个状态集合
+     * @param action       审批动作
+     * @return 匹配的审批环节
+     */
+    public List<FlowBasic> findByPrevStatus(Collection<String> prevStatuses, String action) {
+        return graph.findFlows(prevStatuses, action);
+    }
+
+    /**
+     * 按TASK_ORDER查找审批环节
+     *
+     * @param taskOrder taskOrder
+     * @return 审批环节列表，不可修改
+     */
+    public List<FlowBasic> getByTaskOrder(int taskOrder) {
+        return Collections.unmodifiableList(taskOrderIndex.getOrDefault(taskOrder, Collections.emptyList()));
+    }
+
+    /**
+     * 按LAST_TASK查找审批环节
+     *
+     * @param lastTask lastTask
+     * @return 审批环节列表，不可修改
+     */
+    public List<FlowBasic> getByLastTask(int lastTask) {
+        return Collections.unmodifiableList(lastTaskIndex.getOrDefault(lastTask, Collections.emptyList()));
+    }
+
+    /**
+     * 获取审批环节预先解析的处理角色
+     *
+     * @param flowBasic 当前流程定义中的审批环节
+     * @return 角色列表，不可修改，未配置时为空
+     */
+    public List<String> getHandleRoles(FlowBasic flowBasic) {
+        List<String> roles = handleRoles.get(flowBasic);
+        return roles == null ? parseRoles(flowBasic.getHandleRoles()) : roles;
+    }
+
+    /**
+     * 获取所有配置了处理角色的待办状态，不限制角色
+     *
+     * @param todoEnum 待办类型
+     * @return 待办状态集合，不可修改
+     */
+    public Set<String> getTodoStatus(TodoEnum todoEnum) {
+        return todoStatus.get(todoEnum);
+    }
+
+    /**
+     * 获取指定角色可以处理的待办状态
+     *
+     * @param todoEnum 待办类型
+     * @param role     角色
+     * @return 待办状态集合，不可修改
+     */
+    public Set<String> getTodoStatus(TodoEnum todoEnum, String role) {
+        return roleTodoStatus.get(todoEnum).getOrDefault(role, Collections.emptySet());
+    }
+
+    /**
+     * 获取V1流程元数据，首次访问时通过builder构建并缓存，之后只复制缓存的FlowMetaVo，不再遍历流程图；并发首次访问时可能重复构建，结果相同
+     *
+     * @param builder 根据流程图构建元数据，如FlowBasicService.getFlowMetaInfoV1(FlowGraph)
+     * @return 元数据列表的副本，调用方可以修改列表及其中的FlowMetaVo
+     */
+    public List<FlowMetaVo> getFlowMetaInfoV1(Function<FlowGraph, List<FlowMetaVo>> builder) {
+        List<FlowMetaVo> metas = flowMetaInfoV1;
+        if (metas == null) {
+            metas = Collections.unmodifiableList(new ArrayList<>(builder.apply(graph)));
+            flowMetaInfoV1 = metas;
+        }
+        List<FlowMetaVo> copies = new ArrayList<>(metas.size());
+        for (FlowMetaVo meta : metas) {
+            copies.add(new FlowMetaVo().setPrevStatus(meta.getPrevStatus()).setNextStatus(meta.getNextStatus())
+                    .setAction(meta.getAction()).setLabel(meta.getLabel()));
+        }
+        return copies;
+    }
+
+    public List<FlowBasic> getFlowBasics() {
+        return graph.getFlowBasics();
+    }
+
+    public FlowGraph getGraph() {
+        return graph;
+    }
+
+    public String getFlowName() {
+        return flowName;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
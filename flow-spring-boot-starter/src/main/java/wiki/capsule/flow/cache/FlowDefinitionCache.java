@@ -0,0 +1,393 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wiki.capsule.flow.FlowProperties;
+import wiki.capsule.flow.entity.FlowBasic;
+import wiki.capsule.flow.exception.FlowException;
+import wiki.capsule.flow.graph.FlowGraph;
+import wiki.capsule.flow.service.FlowBasicService;
+import wiki.capsule.flow.support.FlowReadContext;
+import wiki.capsule.flow.support.FlowRoutingDataSource;
+import wiki.capsule.flow.utils.LruCache;
+import wiki.capsule.flow.utils.RuleUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 流程定义内存缓存，按flowName + entityName缓存FLOW_BASIC记录
+ * 修改FLOW_BASIC后需要调用invalidate或invalidateAll使缓存失效，也可以通过capsule.flow.cache.ttl设置过期时间
+ * 多节点部署时配置capsule.flow.cache.version-poll-interval，修改FLOW_BASIC后调用refresh递增FLOW_DEFINITION_VERSION中的版本号，
+ * 各节点定时读取版本号，发现变化时在后台线程重新加载并编译流程定义，再原子替换缓存中的旧实例，请求线程不会读到加载了一半的定义
+ * 开启capsule.flow.cache.versioned时每个版本保存一份快照，get(flowName, entityName, version)从容量为history-size的LRU中获取历史版本，
+ * 未命中时从快照重建，处理器据此让进行中的回合按开始时的版本流转
+ * 开启capsule.flow.replica.enabled时，流程定义、版本号和快照总是读写主库，避免把副本上尚未同步的旧定义缓存下来
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+@Component
+public class FlowDefinitionCache {
+
+    @Resource
+    private FlowBasicService flowBasicService;
+    @Resource
+    private FlowProperties flowProperties;
+    @Resource
+    private DataSource dataSource;
+
+    private final ConcurrentMap<String, FlowDefinition> definitions = new ConcurrentHashMap<>();
+
+    /**
+     * 正在加载的流程定义，同一流程同时未命中时只查询一次数据库
+     */
+    private final ConcurrentMap<String, CompletableFuture<FlowDefinition>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 各流程被invalidate的次数，加载开始后被invalidate过的结果不放入缓存，只在definitions的compute中修改
+     */
+    private final ConcurrentMap<String, Long> generations = new ConcurrentHashMap<>();
+
+    /**
+     * 最近一次从FLOW_DEFINITION_VERSION读到的各流程版本号
+     */
+    private final ConcurrentMap<String, Long> knownVersions = new ConcurrentHashMap<>();
+
+    private volatile FlowDefinitionVersions versions;
+
+    /**
+     * 历史版本的流程定义，key为flowName@entityName@version
+     */
+    private volatile LruCache<FlowDefinition> history;
+
+    private ScheduledExecutorService poller;
+
+    private volatile boolean pollFailing;
+
+    @PostConstruct
+    public void start() {
+        FlowProperties.Cache config = flowProperties.getCache();
+        Duration interval = config.getVersionPollInterval();
+        boolean polling = interval != null && !interval.isZero() && !interval.isNegative();
+        if (!config.isEnabled() || (!polling && !config.isVersioned())) {
+            return;
+        }
+        versions = new FlowDefinitionVersions(dataSource instanceof FlowRoutingDataSource
+                ? ((FlowRoutingDataSource) dataSource).getPrimary() : dataSource);
+        if (config.isVersioned()) {
+            history = new LruCache<>(config.getHistorySize());
+        }
+        if (!polling) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "capsule-flow-definition-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollVersions, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Flow definition version polling started, interval {}.", interval);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取流程定义，缓存未命中或已过期时从数据库加载，同一流程同时未命中的线程等待同一次加载
+     * 加载期间流程被invalidate或已被pollVersions替换时，加载结果只返回给本次调用，不覆盖缓存
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @return FlowDefinition
+     */
+    public FlowDefinition get(String flowName, String entityName) {
+        if (!flowProperties.getCache().isEnabled()) {
+            return load(flowName, entityName);
+        }
+        String key = key(flowName, entityName);
+        FlowDefinition definition = definitions.get(key);
+        if (definition != null && !isExpired(definition)) {
+            return definition;
+        }
+        CompletableFuture<FlowDefinition> future = new CompletableFuture<>();
+        CompletableFuture<FlowDefinition> running = loading.putIfAbsent(key, future);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            long generation = generations.getOrDefault(key, 0L);
+            FlowDefinition loaded = load(flowName, entityName);
+            definitions.compute(key, (k, current) ->
+                    current == definition && generations.getOrDefault(k, 0L) == generation ? loaded : current);
+            future.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private static FlowDefinition await(CompletableFuture<FlowDefinition> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 获取指定版本的流程定义：与当前缓存的版本相同时直接返回，否则从历史版本LRU中获取，未命中时从FLOW_DEFINITION_SNAPSHOT重建
+     * 未开启capsule.flow.cache.versioned或快照不存在时返回最新版本
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @param version    版本号
+     * @return FlowDefinition
+     */
+    public FlowDefinition get(String flowName, String entityName, long version) {
+        FlowDefinition latest = get(flowName, entityName);
+        LruCache<FlowDefinition> current = history;
+        if (current == null || latest.getVersion() == version) {
+            return latest;
+        }
+        String key = key(flowName, entityName) + "@" + version;
+        FlowDefinition definition = current.get(key);
+        if (definition != null) {
+            return definition;
+        }
+        String snapshot;
+        try {
+            snapshot = versions.readSnapshot(flowName, entityName, version);
+        } catch (SQLException e) {
+            throw new FlowException(10042, "Read snapshot of flow " + flowName + " and entity " + entityName + " version " + version
+                    + " failed: " + e.getMessage());
+        }
+        if (snapshot == null) {
+            log.warn("Snapshot of flow {} and entity {} version {} not found, use the latest version {}.",
+                    flowName, entityName, version, latest.getVersion());
+            return latest;
+        }
+        definition = build(flowName, entityName, JSON.parseArray(snapshot, FlowBasic.class), version);
+        current.put(key, definition);
+        return definition;
+    }
+
+    /**
+     * 使指定流程的定义缓存失效，下次访问时重新加载
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     */
+    public void invalidate(String flowName, String entityName) {
+        invalidate(key(flowName, entityName));
+    }
+
+    /**
+     * 使所有流程的定义缓存失效
+     */
+    public void invalidateAll() {
+        Set<String> keys = new HashSet<>(definitions.keySet());
+        keys.addAll(loading.keySet());
+        keys.forEach(this::invalidate);
+    }
+
+    private void invalidate(String key) {
+        // 与get中放入缓存的compute互斥，正在进行的加载不会把旧定义放回缓存；之后的调用不再等待该次加载
+        definitions.compute(key, (k, current) -> {
+            generations.merge(k, 1L, Long::sum);
+            return null;
+        });
+        loading.remove(key);
+    }
+
+    /**
+     * 修改FLOW_BASIC后通知所有节点：开启版本轮询时递增FLOW_DEFINITION_VERSION中的版本号，其他节点在下一次轮询时重新加载；
+     * 当前节点立即失效
+     * 在事务中调用时推迟到事务提交后执行，回滚时不执行，避免其他节点或线程在修改提交前按新版本号加载到旧的FLOW_BASIC记录
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     */
+    public void refresh(String flowName, String entityName) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    doRefresh(flowName, entityName);
+                }
+            });
+            return;
+        }
+        doRefresh(flowName, entityName);
+    }
+
+    private void doRefresh(String flowName, String entityName) {
+        FlowDefinitionVersions current = versions;
+        if (current != null) {
+            long version = current.increment(flowName, entityName);
+            knownVersions.merge(key(flowName, entityName), version, Math::max);
+        }
+        invalidate(flowName, entityName);
+    }
+
+    /**
+     * 读取一次FLOW_DEFINITION_VERSION，重新加载版本号高于已缓存定义的流程，加载完成后替换缓存中的旧实例
+     */
+    public void pollVersions() {
+        FlowDefinitionVersions current = versions;
+        if (current == null) {
+            return;
+        }
+        Map<String, Long> latest;
+        try {
+            latest = current.readAll();
+        } catch (SQLException | RuntimeException e) {
+            if (!pollFailing) {
+                pollFailing = true;
+                log.warn("Poll flow_definition_version failed, cached flow definitions will not be refreshed until it succeeds.", e);
+            }
+            return;
+        }
+        pollFailing = false;
+        for (Map.Entry<String, Long> entry : latest.entrySet()) {
+            long version = entry.getValue();
+            knownVersions.merge(entry.getKey(), version, Math::max);
+            FlowDefinition cached = definitions.get(entry.getKey());
+            if (cached == null || cached.getVersion() >= version) {
+                continue;
+            }
+            try {
+                FlowDefinition reloaded = load(cached.getFlowName(), cached.getEntityName());
+                // 加载期间被invalidate或已被其他线程替换时不覆盖
+                if (definitions.replace(entry.getKey(), cached, reloaded)) {
+                    log.info("Reloaded flow definition of flow {} and entity {}, version {} -> {}.",
+                            cached.getFlowName(), cached.getEntityName(), cached.getVersion(), reloaded.getVersion());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Reload flow definition of flow {} and entity {} failed.", cached.getFlowName(), cached.getEntityName(), e);
+            }
+        }
+    }
+
+    private FlowDefinition load(String flowName, String entityName) {
+        // 先取版本号再查询FLOW_BASIC，加载期间版本号再次递增时下一次轮询会重新加载
+        long version = readVersion(flowName, entityName);
+        List<FlowBasic> flowBasics;
+        // 可能由只读查询触发加载，按写操作处理使其读取主库
+        FlowReadContext.beginWrite();
+        try {
+            flowBasics = flowBasicService.list(new LambdaQueryWrapper<FlowBasic>()
+                    .eq(FlowBasic::getFlowName, flowName)
+                    .eq(FlowBasic::getEntityName, entityName));
+        } finally {
+            FlowReadContext.endWrite();
+        }
+        log.debug("Loaded {} flow definitions for flow {} and entity {}.", flowBasics.size(), flowName, entityName);
+        // 查询期间版本号已递增时，查到的记录可能已是新版本，不能作为旧版本的快照保存
+        if (history != null && readVersion(flowName, entityName) == version) {
+            try {
+                if (versions.saveSnapshot(flowName, entityName, version, JSON.toJSONString(flowBasics))) {
+                    log.info("Saved snapshot of flow {} and entity {} version {}.", flowName, entityName, version);
+                }
+            } catch (SQLException e) {
+                log.warn("Save snapshot of flow {} and entity {} version {} failed, rounds started with this version "
+                        + "will follow the latest version after the next change.", flowName, entityName, version, e);
+            }
+        }
+        return build(flowName, entityName, flowBasics, version);
+    }
+
+    private long readVersion(String flowName, String entityName) {
+        String key = key(flowName, entityName);
+        long version = knownVersions.getOrDefault(key, 0L);
+        FlowDefinitionVersions current = versions;
+        if (current == null) {
+            return version;
+        }
+        try {
+            long stored = current.read(flowName, entityName);
+            knownVersions.merge(key, stored, Math::max);
+            return Math.max(version, stored);
+        } catch (SQLException e) {
+            log.warn("Read version of flow {} and entity {} failed.", flowName, entityName, e);
+            return version;
+        }
+    }
+
+    private FlowDefinition build(String flowName, String entityName, List<FlowBasic> flowBasics, long version) {
+        FlowDefinition definition = new FlowDefinition(flowName, entityName, flowBasics, version);
+        for (FlowBasic flowBasic : flowBasics) {
+            if (flowProperties.getRule().isPrewarm() && FlowGraph.isRule(flowBasic.getNextStatus())) {
+                RuleUtils.compile(flowProperties.getRule().getEngine(), flowBasic.getNextStatus());
+            }
+        }
+        if (!definition.getGraph().isAcyclic()) {
+            log.warn("Forward tasks (task order >= 1) of flow {} and entity {} contain a cycle.", flowName, entityName);
+        }
+        if (!definition.getGraph().getUnreachableStatuses().isEmpty()) {
+            log.warn("Statuses {} of flow {} and entity {} are unreachable from the first task.",
+                    definition.getGraph().getUnreachableStatuses(), flowName, entityName);
+        }
+        return definition;
+    }
+
+    private boolean isExpired(FlowDefinition definition) {
+        Duration ttl = flowProperties.getCache().getTtl();
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return false;
+        }
+        return System.currentTimeMillis() - definition.getLoadTime() > ttl.toMillis();
+    }
+
+    static String key(String flowName, String entityName) {
+        return flowName + "@" + entityName;
+    }
+}
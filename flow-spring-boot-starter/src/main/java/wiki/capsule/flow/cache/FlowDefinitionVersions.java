@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.cache;
+
+import wiki.capsule.flow.exception.FlowException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 流程定义版本号表FLOW_DEFINITION_VERSION的读写，每条流程（flowName + entityName）一行
+ * 修改FLOW_BASIC后递增对应行的VERSION，各节点定时读取整张表（按主键顺序的一次查询），发现版本变化时重新加载流程定义
+ * 递增使用独立的数据库连接和事务，不加入当前的业务事务
+ * 开启capsule.flow.cache.versioned时，每个版本加载后的FLOW_BASIC记录以JSON保存到FLOW_DEFINITION_SNAPSHOT，供仍按旧版本流转的回合重建流程定义
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class FlowDefinitionVersions {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final DataSource dataSource;
+
+    public FlowDefinitionVersions(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 读取所有流程的当前版本号
+     *
+     * @return flowName + "@" + entityName -> 版本号
+     * @throws SQLException 查询失败，如表不存在
+     */
+    public Map<String, Long> readAll() throws SQLException {
+        Map<String, Long> versions = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement("SELECT FLOW_NAME, ENTITY_NAME, VERSION FROM flow_definition_version");
+             ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+                versions.put(FlowDefinitionCache.key(resultSet.getString(1), resultSet.getString(2)), resultSet.getLong(3));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * 读取指定流程的当前版本号
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @return 版本号，行不存在时为0
+     * @throws SQLException 查询失败，如表不存在
+     */
+    public long read(String flowName, String entityName) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(
+                     "SELECT VERSION FROM flow_definition_version WHERE FLOW_NAME = ? AND ENTITY_NAME = ?")) {
+            select.setString(1, flowName);
+            select.setString(2, entityName);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0L;
+            }
+        }
+    }
+
+    /**
+     * 读取指定版本的流程定义快照
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @param version    版本号
+     * @return FLOW_BASIC记录的JSON数组，快照不存在时为null
+     * @throws SQLException 查询失败，如表不存在
+     */
+    public String readSnapshot(String flowName, String entityName, long version) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(
+                     "SELECT DEFINITION FROM flow_definition_snapshot WHERE FLOW_NAME = ? AND ENTITY_NAME = ? AND VERSION = ?")) {
+            select.setString(1, flowName);
+            select.setString(2, entityName);
+            select.setLong(3, version);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * 保存指定版本的流程定义快照，已存在时保留先保存的快照
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @param version    版本号
+     * @param definition FLOW_BASIC记录的JSON数组
+     * @return true表示本次写入，false表示快照已存在
+     * @throws SQLException 写入失败
+     */
+    public boolean saveSnapshot(String flowName, String entityName, long version, String definition) throws SQLException {
+        if (readSnapshot(flowName, entityName, version) != null) {
+            return false;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO flow_definition_snapshot (FLOW_NAME, ENTITY_NAME, VERSION, DEFINITION) VALUES (?, ?, ?, ?)")) {
+            insert.setString(1, flowName);
+            insert.setString(2, entityName);
+            insert.setLong(3, version);
+            insert.setString(4, definition);
+            insert.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            // 其他节点同时保存了同一版本的快照
+            if (readSnapshot(flowName, entityName, version) != null) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 递增指定流程的版本号，行不存在时以1初始化
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @return 递增后的版本号
+     */
+    public long increment(String flowName, String entityName) {
+        SQLException failure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try (Connection connection = dataSource.getConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    long version = increment(connection, flowName, entityName);
+                    connection.commit();
+                    return version;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                // 并发初始化同一流程的版本行时主键冲突，重试后走update分支
+                failure = e;
+            }
+        }
+        throw new FlowException(10041, "Failed to increment version of flow " + flowName + " and entity " + entityName
+                + " in flow_definition_version: " + failure.getMessage());
+    }
+
+    private long increment(Connection connection, String flowName, String entityName) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE flow_definition_version SET VERSION = VERSION + 1, UPDATE_TIME = CURRENT_TIMESTAMP WHERE FLOW_NAME = ? AND ENTITY_NAME = ?")) {
+            update.setString(1, flowName);
+            update.setString(2, entityName);
+            if (update.executeUpdate() > 0) {
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT VERSION FROM flow_definition_version WHERE FLOW_NAME = ? AND ENTITY_NAME = ?")) {
+                    select.setString(1, flowName);
+                    select.setString(2, entityName);
+                    try (ResultSet resultSet = select.executeQuery()) {
+                        resultSet.next();
+                        return resultSet.getLong(1);
+                    }
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO flow_definition_version (FLOW_NAME, ENTITY_NAME, VERSION) VALUES (?, ?, 1)")) {
+            insert.setString(1, flowName);
+            insert.setString(2, entityName);
+            insert.executeUpdate();
+        }
+        return 1L;
+    }
+}
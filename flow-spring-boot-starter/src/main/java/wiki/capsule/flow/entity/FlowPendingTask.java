@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <pre>
+ * 待办索引表，由引擎在处理后维护，每个单据的每个待处理环节、每个可处理角色一条记录
+ * 用于按角色查询待办单据id，替代todoSql中无法走索引的APPROVAL_STATUS_JSON条件
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Data
+@Accessors(chain = true)
+public class FlowPendingTask implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @TableId(value = "ID", type = IdType.AUTO)
+    private Long id;
+
+    @TableField("FLOW_NAME")
+    private String flowName;
+
+    @TableField("ENTITY_NAME")
+    private String entityName;
+
+    @TableField("ORDER_ID")
+    private Long orderId;
+
+    @TableField("ROUND_ID")
+    private Long roundId;
+
+    @TableField("PENDING_STATUS")
+    private String pendingStatus;
+
+    @TableField("HANDLE_ROLE")
+    private String handleRole;
+
+    /**
+     * 1表示待提交环节（taskOrder为0或1），0表示待审批环节
+     */
+    @TableField("SUBMIT_TASK")
+    private Integer submitTask;
+
+    @TableField("CREATE_TIME")
+    private LocalDateTime createTime;
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.enums;
+
+/**
+ * 同一单据被并发处理（如并签A&&B的两个审批人同时审批）时的并发控制策略
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public enum ConcurrencyStrategy {
+    /**
+     * 不做并发控制，由调用方自行保证同一单据不会被并发处理
+     */
+    NONE,
+    /**
+     * 按(entityName, orderId)加JVM内的分段锁，加锁后重新读取单据的审批状态字段，只在单实例部署时有效
+     */
+    LOCK,
+    /**
+     * 乐观锁，afterProcess持久化时版本冲突抛出FlowConflictException，重新读取单据后重试
+     */
+    OPTIMISTIC;
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.enums;
+
+/**
+ * 并签（A&&B）时判断哪些环节已经处理完成的策略
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public enum JoinStrategy {
+    /**
+     * 按当前回合查询一次审批日志（PREV_STATUS IN (...)）
+     */
+    LOG_QUERY,
+    /**
+     * 直接读取单据的approvalStatusJson字段，值为1的环节视为已处理完成，不查询数据库
+     */
+    STATUS_JSON;
+}
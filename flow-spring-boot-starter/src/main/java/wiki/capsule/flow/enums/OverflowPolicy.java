@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.enums;
+
+/**
+ * 异步写入审批日志时队列已满的处理策略
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public enum OverflowPolicy {
+    /**
+     * 由调用线程直接同步写入数据库
+     */
+    CALLER_RUNS,
+    /**
+     * 阻塞调用线程直到队列有空闲
+     */
+    BLOCK,
+    /**
+     * 抛出FlowException
+     */
+    FAIL;
+}
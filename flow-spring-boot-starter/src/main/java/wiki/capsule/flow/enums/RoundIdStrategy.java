@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.enums;
+
+/**
+ * 审批回合（FLOW_ROUND）ID的生成策略
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public enum RoundIdStrategy {
+    /**
+     * 数据库自增，每次开启回合时立即insert以获取ID
+     */
+    AUTO_INCREMENT,
+    /**
+     * 从FLOW_SEQUENCE表按号段租用ID，用完一个号段才访问一次数据库，需要先创建该表
+     * 所有节点必须同时切换，不能与仍使用AUTO_INCREMENT的节点混合运行，否则FLOW_ROUND会出现主键冲突
+     */
+    HILO,
+    /**
+     * 按时间递增的64位ID：毫秒时间戳 + 10位workerId + 12位序号，不访问数据库，多实例部署时需要配置不同的workerId
+     */
+    TIME;
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.enums;
+
+/**
+ * 解析nextStatus中&lt;% %&gt;规则表达式的引擎
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public enum RuleEngine {
+    /**
+     * 使用Beetl模板渲染，支持完整的Beetl语法
+     */
+    BEETL,
+    /**
+     * 编译为Java lambda树直接求值，不经过模板输出；支持if/else + print的Beetl写法，print中可以使用三元表达式，
+     * 运算符使用Beetl的实现，超出支持范围的表达式以及求值出错时自动回退到Beetl
+     */
+    COMPILED;
+}
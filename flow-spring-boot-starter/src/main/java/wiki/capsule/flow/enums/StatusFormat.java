@@ -0,0 +1,34 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.enums;
+
+/**
+ * approvalStatusJson字段的存储格式，读取时两种格式都能识别，写入时使用配置的格式
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public enum StatusFormat {
+    /**
+     * JSON对象，如{"A":1,"B":0}，值为1表示环节已处理，可以使用MySQL的JSON函数查询
+     */
+    JSON,
+    /**
+     * 位图字符串，按当前审批状态表达式中环节的顺序每个环节一位，如A&amp;&amp;B的"10"表示A已处理、B待处理，可以使用SUBSTRING查询
+     */
+    BITSET;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.exception;
+
+/**
+ * <pre>
+ * 单据并发修改冲突异常，乐观锁策略下在afterProcess中持久化失败（更新行数为0）时抛出，引擎会重新读取单据后重试
+ * 例如：if (!orderService.updateById(order)) { throw new FlowConflictException(order.getId()); }
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class FlowConflictException extends FlowException {
+
+    public FlowConflictException(Object orderId) {
+        super(10035, "Document " + orderId + " has been modified concurrently.");
+    }
+
+    public FlowConflictException(String message) {
+        super(10035, message);
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.graph;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.apache.commons.lang3.StringUtils;
+import wiki.capsule.flow.entity.FlowBasic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * 由FLOW_BASIC记录编译而成的流程图，加载后不可变
+ * 状态和审批动作被驻留为整数id，每个状态按审批动作建立邻接数组，状态表达式（&&、||）在编译时预先解析
+ * 编译时同时校验正向环节（taskOrder>=1）是否存在环，以及从起始状态不可达的状态
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public final class FlowGraph {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final FlowBasic[] flows;
+
+    private final Map<String, Integer> nodeIds = new HashMap<>();
+
+    private final List<String> nodeNames = new ArrayList<>();
+
+    private final Map<String, Integer> actionIds = new HashMap<>();
+
+    /**
+     * [节点id][动作id] -> 环节下标数组
+     */
+    private final int[][][] adjacency;
+
+    /**
+     * [节点id] -> 所有动作的环节下标数组
+     */
+    private final int[][] outgoing;
+
+    /**
+     * [环节下标] -> 流转到的节点id数组
+     */
+    private final int[][] targets;
+
+    /**
+     * [节点id] -> 正向环节（taskOrder>=1），同一状态有多个时以后加载的为准
+     */
+    private final FlowBasic[] forwardFlows;
+
+    private final List<FlowBasic> firstFlows;
+
+    private final Map<String, FlowStatus> statuses = new ConcurrentHashMap<>();
+
+    private final boolean acyclic;
+
+    private final Set<String> unreachableStatuses;
+
+    public FlowGraph(List<FlowBasic> flowBasics) {
+        this.flows = flowBasics.toArray(new FlowBasic[0]);
+        Arrays.sort(flows, Comparator.comparing(FlowBasic::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        // 驻留所有状态和动作
+        for (FlowBasic flow : flows) {
+            intern(flow.getPrevStatus());
+            actionIds.putIfAbsent(flow.getAction(), actionIds.size());
+        }
+        List<Set<Integer>> targetSets = new ArrayList<>();
+        for (FlowBasic flow : flows) {
+            Set<Integer> flowTargets = new LinkedHashSet<>();
+            for (String target : staticTargets(flow)) {
+                Integer composite = nodeIds.get(target);
+                if (composite != null) {
+                    flowTargets.add(composite);
+                }
+                for (String step : FlowStatus.parse(target).getSteps()) {
+                    flowTargets.add(intern(step));
+                }
+            }
+            targetSets.add(flowTargets);
+        }
+
+        // 建立邻接数组
+        int nodeCount = nodeNames.size();
+        List<List<List<Integer>>> adjacencyLists = new ArrayList<>();
+        List<List<Integer>> outgoingLists = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            List<List<Integer>> byAction = new ArrayList<>();
+            for (int j = 0; j < actionIds.size(); j++) {
+                byAction.add(new ArrayList<>());
+            }
+            adjacencyLists.add(byAction);
+            outgoingLists.add(new ArrayList<>());
+        }
+        this.forwardFlows = new FlowBasic[nodeCount];
+        List<FlowBasic> first = new ArrayList<>();
+        for (int i = 0; i < flows.length; i++) {
+            FlowBasic flow = flows[i];
+            int node = nodeIds.get(flow.getPrevStatus());
+            adjacencyLists.get(node).get(actionIds.get(flow.getAction())).add(i);
+            outgoingLists.get(node).add(i);
+            if (isForward(flow)) {
+                forwardFlows[node] = flow;
+            }
+            if (flow.getTaskOrder() != null && flow.getTaskOrder() == 1) {
+                first.add(flow);
+            }
+        }
+        this.firstFlows = Collections.unmodifiableList(first);
+        this.adjacency = new int[nodeCount][][];
+        this.outgoing = new int[nodeCount][];
+        for (int i = 0; i < nodeCount; i++) {
+            adjacency[i] = new int[actionIds.size()][];
+            for (int j = 0; j < actionIds.size(); j++) {
+                adjacency[i][j] = toArray(adjacencyLists.get(i).get(j));
+            }
+            outgoing[i] = toArray(outgoingLists.get(i));
+        }
+        this.targets = new int[flows.length][];
+        for (int i = 0; i < flows.length; i++) {
+            targets[i] = toArray(targetSets.get(i));
+        }
+
+        // 预解析所有已知的状态表达式
+        for (FlowBasic flow : flows) {
+            compile(flow.getPrevStatus());
+            for (String target : staticTargets(flow)) {
+                compile(target);
+            }
+        }
+
+        this.acyclic = checkAcyclic();
+        this.unreachableStatuses = Collections.unmodifiableSet(findUnreachableStatuses());
+    }
+
+    /**
+     * 判断下一个状态是否是需要规则引擎解析的表达式
+     *
+     * @param nextStatus 下一个状态
+     * @return true表示是&lt;% %&gt;表达式
+     */
+    public static boolean isRule(String nextStatus) {
+        return nextStatus != null && nextStatus.startsWith("<%") && nextStatus.endsWith("%>");
+    }
+
+    /**
+     * 获取预解析的状态表达式，流程中未出现过的表达式（如规则引擎解析结果）在首次访问时解析
+     *
+     * @param expression 状态表达式
+     * @return FlowStatus
+     */
+    public FlowStatus status(String expression) {
+        FlowStatus status = statuses.get(expression);
+        if (status != null) {
+            return status;
+        }
+        status = FlowStatus.parse(expression, this);
+        // 只缓存全部环节都在流程中定义过的表达式，避免缓存无限增长
+        for (int i = 0; i < status.getSteps().size(); i++) {
+            if (status.getStepId(i) < 0) {
+                return status;
+            }
+        }
+        FlowStatus previous = statuses.putIfAbsent(expression, status);
+        return previous == null ? status : previous;
+    }
+
+    /**
+     * @return 所有已预解析的状态表达式，包括流程中配置的和运行时解析过的
+     */
+    public Collection<FlowStatus> getStatuses() {
+        return Collections.unmodifiableCollection(statuses.values());
+    }
+
+    /**
+     * 按环节状态和审批动作查找审批环节，action为空时不限制审批动作，多个环节时按ID升序返回
+     *
+     * @param steps  环节状态集合
+     * @param action 审批动作
+     * @return 审批环节列表
+     */
+    public List<FlowBasic> findFlows(Collection<String> steps, String action) {
+        Integer actionId = null;
+        if (StringUtils.isNotBlank(action)) {
+            actionId = actionIds.get(action);
+            if (actionId == null) {
+                return new ArrayList<>();
+            }
+        }
+        int[] indexes = EMPTY;
+        int size = 0;
+        for (String step : steps) {
+            int node = nodeId(step);
+            if (node < 0) {
+                continue;
+            }
+            int[] matched = actionId == null ? outgoing[node] : adjacency[node][actionId];
+            if (matched.length == 0) {
+                continue;
+            }
+            if (size + matched.length > indexes.length) {
+                indexes = Arrays.copyOf(indexes, Math.max(indexes.length * 2, size + matched.length));
+            }
+            System.arraycopy(matched, 0, indexes, size, matched.length);
+            size += matched.length;
+        }
+        if (steps.size() > 1) {
+            Arrays.sort(indexes, 0, size);
+        }
+        List<FlowBasic> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && indexes[i] == indexes[i - 1]) {
+                continue;
+            }
+            result.add(flows[indexes[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * 获取状态对应的正向环节（taskOrder>=1），用于按流程顺序遍历
+     *
+     * @param status 状态
+     * @return 正向环节，不存在时返回null
+     */
+    public FlowBasic getForwardFlow(String status) {
+        int node = nodeId(status);
+        return node < 0 ? null : forwardFlows[node];
+    }
+
+    /**
+     * @param status 状态
+     * @return 节点id，不存在时返回-1
+     */
+    public int nodeId(String status) {
+        Integer id = status == null ? null : nodeIds.get(status);
+        return id == null ? -1 : id;
+    }
+
+    public String nodeName(int nodeId) {
+        return nodeNames.get(nodeId);
+    }
+
+    public int getNodeCount() {
+        return nodeNames.size();
+    }
+
+    /**
+     * @return 所有审批环节，按ID升序排列，不可修改
+     */
+    public List<FlowBasic> getFlowBasics() {
+        return Collections.unmodifiableList(Arrays.asList(flows));
+    }
+
+    /**
+     * @return 所有taskOrder为1的起始环节
+     */
+    public List<FlowBasic> getFirstFlows() {
+        return firstFlows;
+    }
+
+    /**
+     * @return 正向环节（taskOrder>=1）是否构成有向无环图
+     */
+    public boolean isAcyclic() {
+        return acyclic;
+    }
+
+    /**
+     * @return 从起始状态出发不可达、但配置了处理环节的状态
+     */
+    public Set<String> getUnreachableStatuses() {
+        return unreachableStatuses;
+    }
+
+    private int intern(String status) {
+        Integer id = nodeIds.get(status);
+        if (id == null) {
+            id = nodeNames.size();
+            nodeIds.put(status, id);
+            nodeNames.add(status);
+        }
+        return id;
+    }
+
+    private void compile(String expression) {
+        statuses.computeIfAbsent(expression, e -> FlowStatus.parse(e, this));
+    }
+
+    private static boolean isForward(FlowBasic flow) {
+        return flow.getTaskOrder() != null && flow.getTaskOrder() >= 1;
+    }
+
+    /**
+     * 静态可知的流转目标：普通状态直接返回，规则表达式取nextStatusAlias中配置的分支
+     */
+    private static List<String> staticTargets(FlowBasic flow) {
+        List<String> result = new ArrayList<>();
+        String nextStatus = flow.getNextStatus();
+        if (StringUtils.isBlank(nextStatus)) {
+            return result;
+        }
+        if (!isRule(nextStatus)) {
+            result.add(nextStatus);
+            return result;
+        }
+        if (StringUtils.isBlank(flow.getNextStatusAlias())) {
+            return result;
+        }
+        try {
+            JSONArray array = JSON.parseArray(flow.getNextStatusAlias());
+            for (int i = 0; i < array.size(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                String target = StringUtils.defaultIfBlank(item.getString("next_step"), item.getString("next_status"));
+                if (StringUtils.isNotBlank(target)) {
+                    result.add(target);
+                }
+            }
+        } catch (RuntimeException e) {
+            // nextStatusAlias格式错误时不影响流程编译，运行时再报错
+        }
+        return result;
+    }
+
+    private boolean checkAcyclic() {
+        int nodeCount = nodeNames.size();
+        // 0-未访问；1-访问中；2-已完成
+        int[] state = new int[nodeCount];
+        for (int start = 0; start < nodeCount; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            Deque<int[]> stack = new ArrayDeque<>();
+            stack.push(new int[]{start, 0, 0});
+            state[start] = 1;
+            while (!stack.isEmpty()) {
+                int[] frame = stack.peek();
+                int node = frame[0];
+                int[] edges = outgoing[node];
+                boolean pushed = false;
+                while (frame[1] < edges.length) {
+                    int flowIndex = edges[frame[1]];
+                    if (!isForward(flows[flowIndex]) || frame[2] >= targets[flowIndex].length) {
+                        frame[1]++;
+                        frame[2] = 0;
+                        continue;
+                    }
+                    int next = targets[flowIndex][frame[2]++];
+                    if (state[next] == 1) {
+                        return false;
+                    }
+                    if (state[next] == 0) {
+                        state[next] = 1;
+                        stack.push(new int[]{next, 0, 0});
+                        pushed = true;
+                        break;
+                    }
+                }
+                if (!pushed) {
+                    state[node] = 2;
+                    stack.pop();
+                }
+            }
+        }
+        return true;
+    }
+
+    private Set<String> findUnreachableStatuses() {
+        Set<String> result = new LinkedHashSet<>();
+        if (firstFlows.isEmpty()) {
+            return result;
+        }
+        boolean[] visited = new boolean[nodeNames.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (FlowBasic flow : firstFlows) {
+            int node = nodeIds.get(flow.getPrevStatus());
+            if (!visited[node]) {
+                visited[node] = true;
+                queue.add(node);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int flowIndex : outgoing[node]) {
+                for (int next : targets[flowIndex]) {
+                    if (!visited[next]) {
+                        visited[next] = true;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < nodeNames.size(); i++) {
+            if (!visited[i] && outgoing[i].length > 0) {
+                result.add(nodeNames.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static int[] toArray(Collection<Integer> values) {
+        if (values.isEmpty()) {
+            return EMPTY;
+        }
+        int[] result = new int[values.size()];
+        int i = 0;
+        for (Integer value : values) {
+            result[i++] = value;
+        }
+        return result;
+    }
+}
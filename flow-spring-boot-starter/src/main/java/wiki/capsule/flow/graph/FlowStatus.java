@@ -0,0 +1,156 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <pre>
+ * 预解析后的审批状态表达式，不可变
+ * A表示单签；A&&B表示并签，所有环节都处理完成才流转；A||B表示会签，任一环节处理后即流转
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public final class FlowStatus {
+
+    public static final String EX_AND = "&&";
+
+    public static final String EX_OR = "||";
+
+    public enum Type {
+        /**
+         * 单签
+         */
+        SINGLE,
+        /**
+         * 并签，A&&B
+         */
+        AND,
+        /**
+         * 会签，A||B
+         */
+        OR
+    }
+
+    private final String expression;
+
+    private final Type type;
+
+    private final List<String> steps;
+
+    private final int[] stepIds;
+
+    FlowStatus(String expression, Type type, String[] steps, int[] stepIds) {
+        this.expression = expression;
+        this.type = type;
+        this.steps = Collections.unmodifiableList(Arrays.asList(steps));
+        this.stepIds = stepIds;
+    }
+
+    /**
+     * 解析状态表达式，不依赖正则表达式；未关联FlowGraph时所有环节的节点id均为-1
+     *
+     * @param expression 状态表达式
+     * @return FlowStatus
+     */
+    public static FlowStatus parse(String expression) {
+        return parse(expression, null);
+    }
+
+    static FlowStatus parse(String expression, FlowGraph graph) {
+        Type type;
+        String[] steps;
+        if (expression.contains(EX_AND)) {
+            type = Type.AND;
+            steps = split(expression, EX_AND);
+        } else if (expression.contains(EX_OR)) {
+            type = Type.OR;
+            steps = split(expression, EX_OR);
+        } else {
+            type = Type.SINGLE;
+            steps = new String[]{expression};
+        }
+        int[] stepIds = new int[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            stepIds[i] = graph == null ? -1 : graph.nodeId(steps[i]);
+            if (stepIds[i] >= 0) {
+                steps[i] = graph.nodeName(stepIds[i]);
+            }
+        }
+        return new FlowStatus(expression, type, steps, stepIds);
+    }
+
+    /**
+     * 与String.split保持一致：丢弃末尾的空字符串
+     */
+    private static String[] split(String expression, String separator) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int index;
+        while ((index = expression.indexOf(separator, start)) >= 0) {
+            parts.add(expression.substring(start, index));
+            start = index + separator.length();
+        }
+        parts.add(expression.substring(start));
+        int size = parts.size();
+        while (size > 0 && parts.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return parts.subList(0, size).toArray(new String[0]);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isAnd() {
+        return type == Type.AND;
+    }
+
+    public boolean isOr() {
+        return type == Type.OR;
+    }
+
+    /**
+     * @return 拆分后的环节状态，不可修改
+     */
+    public List<String> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @param index 环节下标
+     * @return 环节在FlowGraph中的节点id，未在流程中定义时为-1
+     */
+    public int getStepId(int index) {
+        return stepIds[index];
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
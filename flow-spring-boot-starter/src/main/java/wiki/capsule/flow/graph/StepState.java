@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.graph;
+
+import com.alibaba.fastjson.JSONObject;
+import org.apache.commons.lang3.StringUtils;
+import wiki.capsule.flow.enums.StatusFormat;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * <pre>
+ * 当前审批状态下各环节的处理情况，即approvalStatusJson字段的内存形式，按FlowStatus中环节的下标记录已处理的位
+ * 解析时同时兼容JSON格式（以{开头）和位图格式，历史数据在下一次流转时按配置的格式重新写入，无需一次性迁移
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public final class StepState {
+
+    private static final char HANDLED = '1';
+
+    private static final char PENDING = '0';
+
+    private final FlowStatus status;
+
+    private final BitSet handled;
+
+    private StepState(FlowStatus status, BitSet handled) {
+        this.status = status;
+        this.handled = handled;
+    }
+
+    /**
+     * 创建所有环节都待处理的状态
+     *
+     * @param status 审批状态
+     * @return StepState
+     */
+    public static StepState pending(FlowStatus status) {
+        return new StepState(status, new BitSet(status.getSteps().size()));
+    }
+
+    /**
+     * 解析approvalStatusJson字段，JSON格式中值为1的环节视为已处理，未出现在表达式中的键被忽略
+     *
+     * @param status 审批状态
+     * @param value  字段值，为空时所有环节都待处理
+     * @return StepState
+     */
+    public static StepState parse(FlowStatus status, String value) {
+        StepState state = pending(status);
+        if (StringUtils.isBlank(value)) {
+            return state;
+        }
+        List<String> steps = status.getSteps();
+        if (isJson(value)) {
+            JSONObject json = JSONObject.parseObject(value);
+            for (int i = 0; i < steps.size(); i++) {
+                if (json.getIntValue(steps.get(i)) == 1) {
+                    state.handled.set(i);
+                }
+            }
+            return state;
+        }
+        for (int i = 0; i < steps.size() && i < value.length(); i++) {
+            if (value.charAt(i) == HANDLED) {
+                state.handled.set(i);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @param value approvalStatusJson字段值
+     * @return 是否为JSON格式
+     */
+    public static boolean isJson(String value) {
+        return value != null && value.trim().startsWith("{");
+    }
+
+    public FlowStatus getStatus() {
+        return status;
+    }
+
+    public boolean isHandled(int index) {
+        return handled.get(index);
+    }
+
+    public boolean isHandled(String step) {
+        int index = status.getSteps().indexOf(step);
+        return index >= 0 && handled.get(index);
+    }
+
+    /**
+     * 标记环节为已处理，不在当前表达式中的环节被忽略
+     *
+     * @param step 环节状态
+     */
+    public void handle(String step) {
+        int index = status.getSteps().indexOf(step);
+        if (index >= 0) {
+            handled.set(index);
+        }
+    }
+
+    public int getHandledCount() {
+        return handled.cardinality();
+    }
+
+    public boolean isAllHandled() {
+        return handled.cardinality() == status.getSteps().size();
+    }
+
+    /**
+     * @return 环节 -> 0或1，按表达式中环节的顺序排列
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject(true);
+        List<String> steps = status.getSteps();
+        for (int i = 0; i < steps.size(); i++) {
+            json.put(steps.get(i), handled.get(i) ? 1 : 0);
+        }
+        return json;
+    }
+
+    /**
+     * @return 位图字符串，每个环节一个字符
+     */
+    public String toBits() {
+        char[] bits = new char[status.getSteps().size()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = handled.get(i) ? HANDLED : PENDING;
+        }
+        return new String(bits);
+    }
+
+    /**
+     * 按指定格式序列化为approvalStatusJson字段值
+     *
+     * @param format 存储格式
+     * @return 字段值
+     */
+    public String format(StatusFormat format) {
+        return format == StatusFormat.BITSET ? toBits() : toJson().toJSONString();
+    }
+
+    @Override
+    public String toString() {
+        return status + ":" + toBits();
+    }
+}
@@ -17,34 +17,68 @@
 package wiki.capsule.flow.handler;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wiki.capsule.flow.FlowProperties;
+import wiki.capsule.flow.FlowServiceAutoConfiguration;
+import wiki.capsule.flow.cache.FlowDefinition;
+import wiki.capsule.flow.cache.FlowDefinitionCache;
 import wiki.capsule.flow.entity.FlowBasic;
 import wiki.capsule.flow.entity.FlowLog;
+import wiki.capsule.flow.entity.FlowPendingTask;
 import wiki.capsule.flow.entity.FlowRound;
+import wiki.capsule.flow.enums.ConcurrencyStrategy;
+import wiki.capsule.flow.enums.JoinStrategy;
+import wiki.capsule.flow.enums.RuleEngine;
+import wiki.capsule.flow.enums.StatusFormat;
 import wiki.capsule.flow.enums.TodoEnum;
+import wiki.capsule.flow.exception.FlowConflictException;
 import wiki.capsule.flow.exception.FlowException;
+import wiki.capsule.flow.graph.FlowGraph;
+import wiki.capsule.flow.graph.FlowStatus;
+import wiki.capsule.flow.graph.StepState;
+import wiki.capsule.flow.metrics.FlowMetrics;
 import wiki.capsule.flow.service.FlowBasicService;
 import wiki.capsule.flow.service.FlowLogService;
+import wiki.capsule.flow.service.FlowPendingTaskService;
 import wiki.capsule.flow.service.FlowRoundService;
+import wiki.capsule.flow.support.FlowLockManager;
+import wiki.capsule.flow.support.FlowLogWriter;
+import wiki.capsule.flow.support.FlowReadContext;
+import wiki.capsule.flow.support.FlowUnitOfWork;
+import wiki.capsule.flow.support.RoundIdGenerator;
 import wiki.capsule.flow.utils.ClassUtils;
 import wiki.capsule.flow.utils.RuleUtils;
+import wiki.capsule.flow.vo.FlowBatchItemVo;
+import wiki.capsule.flow.vo.FlowBatchResultVo;
+import wiki.capsule.flow.vo.FlowLogPageVo;
 import wiki.capsule.flow.vo.FlowMetaVo;
+import wiki.capsule.flow.vo.FlowPendingPageVo;
 import wiki.capsule.flow.vo.FlowRootVo;
 import wiki.capsule.flow.vo.FlowTraceVo;
 
 import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -65,47 +99,130 @@ public abstract class AbstractFlowHandler<T> {
     private FlowLogService flowLogService;
     @Resource
     private FlowRoundService flowRoundService;
-
-    private static final String EX_AND = "&&";
-    private static final String EX_OR = "||";
-    private static final String EX_OR_ESCAPE = "\\|\\|";
+    @Resource
+    private FlowDefinitionCache flowDefinitionCache;
+    @Resource
+    private FlowProperties flowProperties;
+    @Resource
+    private FlowMetrics flowMetrics;
+    @Resource
+    private FlowPendingTaskService flowPendingTaskService;
+    @Resource
+    private FlowLogWriter flowLogWriter;
+    @Resource
+    private FlowLockManager flowLockManager;
+    @Resource
+    private FlowUnitOfWork flowUnitOfWork;
+    @Resource
+    private RoundIdGenerator roundIdGenerator;
+    @Resource(name = FlowServiceAutoConfiguration.META_INFO_EXECUTOR)
+    private Executor flowMetaInfoExecutor;
 
     /**
      * 流程入口处理方法
+     * 配置capsule.flow.concurrency.strategy后按单据做并发控制：LOCK在加锁后重新读取审批状态字段，调用方已开启事务时锁在外层事务结束后才释放；
+     * OPTIMISTIC在afterProcess抛出FlowConflictException时重新读取并重试，此时afterProcess会先于审批日志和待办索引执行，冲突时不会留下多余的日志；
+     * 未开启工作单元时新回合在第一次尝试中已经保存，重试时沿用该回合，不再创建新的FlowRound；
+     * 调用方已开启事务时不在同一事务中重试，直接抛出FlowConflictException，由调用方回滚后重新调用
+     * 开启capsule.flow.unit-of-work.enabled时整个处理在一个事务中执行，审批日志和getEntityMapper指定的单据更新在事务结束前批量写入，LOCK策略的锁在事务结束后才释放
+     * 开启capsule.flow.replica.enabled时处理过程中的查询都读主库，处理结束后max-staleness内同一线程的引擎只读查询也读主库
      *
      * @param bizEntity 实体对象
      * @param comment   提交或者审批意见
      * @param action    审批动作，如提交、驳回、通过，根据实际流程配置传入
      * @param user      处理用户
      * @param isSubmit  是否是提交动作，用于判断是否重新开启一个新的审批回合
-     * @return List<FlowBasic> 返回本次用户处理的所有环节
+     * @return List<FlowBasic> 返回本次用户处理的所有环节，为缓存中审批环节的副本，调用方可以修改
      */
     public List<FlowBasic> process(T bizEntity, String action, String comment, String user, boolean isSubmit, boolean isRestart) {
-        // 校验参数
-        verifyParam(bizEntity, action, comment, user);
+        FlowMetrics.Recorder recorder = flowMetrics.process(getFlowName(), getEntityName(), action);
+        ConcurrencyStrategy strategy = flowProperties.getConcurrency().getStrategy();
+        // 外层事务中冲突时事务已被标记为只能回滚，重新读取也可能读到同一个快照，只有自己开启事务时才能重试
+        boolean retryable = strategy == ConcurrencyStrategy.OPTIMISTIC && !TransactionSynchronizationManager.isActualTransactionActive();
+        ReentrantLock lock = null;
+        FlowReadContext.beginWrite();
+        try {
+            // 校验参数
+            recorder.phase(FlowMetrics.PHASE_VERIFY);
+            verifyParam(bizEntity, action, comment, user);
+
+            // 加锁后重新读取审批状态，避免基于调用方读取的旧状态处理；尚未保存的单据不会被并发处理，无需加锁
+            if (strategy == ConcurrencyStrategy.LOCK && getOrderId(bizEntity) != null) {
+                recorder.phase(FlowMetrics.PHASE_LOCK);
+                lock = flowLockManager.lock(getFlowName(), getEntityName(), getOrderId(bizEntity));
+                refreshFlowFields(bizEntity, strategy);
+            }
 
+            boolean restart = isRestart;
+            for (int retry = 0; ; retry++) {
+                try {
+                    boolean optimistic = strategy == ConcurrencyStrategy.OPTIMISTIC;
+                    if (!flowProperties.getUnitOfWork().isEnabled()) {
+                        return doProcess(bizEntity, action, comment, user, isSubmit, restart, optimistic, recorder);
+                    }
+                    // 在一个事务中处理，结束时批量写入审批日志和单据
+                    boolean newRound = restart;
+                    return flowUnitOfWork.execute(() -> {
+                        List<FlowBasic> handledFlows = doProcess(bizEntity, action, comment, user, isSubmit, newRound, optimistic, recorder);
+                        recorder.phase(FlowMetrics.PHASE_FLUSH);
+                        return handledFlows;
+                    });
+                } catch (FlowConflictException e) {
+                    if (!retryable || retry >= flowProperties.getConcurrency().getMaxRetries()) {
+                        flowMetrics.concurrency(getFlowName(), getEntityName(), FlowMetrics.EVENT_CONFLICT_EXHAUSTED);
+                        throw e;
+                    }
+                    flowMetrics.concurrency(getFlowName(), getEntityName(), FlowMetrics.EVENT_CONFLICT_RETRY);
+                    log.debug("Document {} of entity {} was modified concurrently, retry {}.", getOrderId(bizEntity), getEntityName(), retry + 1);
+                    if (restart && !flowProperties.getUnitOfWork().isEnabled()) {
+                        // 未开启工作单元时新回合已经写入FLOW_ROUND，重试时沿用，避免每次重试留下一条无用的回合
+                        refreshFlowFieldsKeepingRound(bizEntity, strategy);
+                        restart = false;
+                    } else {
+                        refreshFlowFields(bizEntity, strategy);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            if (lock != null) {
+                flowLockManager.unlock(lock);
+            }
+            FlowReadContext.endWrite();
+            recorder.stop();
+        }
+    }
+
+    private List<FlowBasic> doProcess(T bizEntity, String action, String comment, String user, boolean isSubmit, boolean isRestart,
+                                      boolean optimistic, FlowMetrics.Recorder recorder) {
         // 判断是否需要新开启一轮新的审批
+        recorder.phase(FlowMetrics.PHASE_ROUND);
         Long flowRoundId = setFlowRoundId(bizEntity, user, isRestart);
 
         // 获取当前的审批状态
+        recorder.phase(FlowMetrics.PHASE_FIND_CURRENT_FLOWS);
         String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
         if (StringUtils.isBlank(approvalStatus)) {
             throw new FlowException(10016, "You have not initial approvalStatus field.");
         }
 
         // 获取当前状态下的，当前审批动作时的所有审批环节，单签时只有一个，会签或者并签时会有多个，并签时不包括已经审批完毕的审批环节
-        List<FlowBasic> currentFlows = findCurrentFlows(approvalStatus, action, flowRoundId);
+        List<FlowBasic> currentFlows = findCurrentFlows(bizEntity, approvalStatus, action, flowRoundId);
         if (CollectionUtils.isEmpty(currentFlows)) {
             throw new FlowException(10017, "Next flow not found before " + approvalStatus + " with action " + action + ".");
         }
 
         // 校验权限
+        recorder.phase(FlowMetrics.PHASE_AUTH_PERMISSION);
         List<FlowBasic> canHandleFlows = authPermission(currentFlows, user);
         if (CollectionUtils.isEmpty(canHandleFlows)) {
             throw new FlowException(10009, "Current user does not have permission to handle this flow.");
         }
 
         // 开始流程处理并返回下一个节点
+        recorder.phase(FlowMetrics.PHASE_START_PROCESS);
         String nextStatus = startProcess(currentFlows, canHandleFlows, bizEntity);
 
         // 保存审批流字段
@@ -115,13 +232,356 @@ public abstract class AbstractFlowHandler<T> {
             setAuditField(bizEntity, comment, user);
         }
 
+        // 乐观锁策略下先持久化单据，版本冲突时直接重试
+        if (optimistic) {
+            recorder.phase(FlowMetrics.PHASE_AFTER_PROCESS);
+            persist(bizEntity);
+        }
+
         // 保存审批日志
-        saveFlowLogs(canHandleFlows, nextStatus, comment, user, ClassUtils.getLongValue(bizEntity, getIdFiled()), flowRoundId);
+        recorder.phase(FlowMetrics.PHASE_SAVE_FLOW_LOGS);
+        saveFlowLogs(canHandleFlows, nextStatus, comment, user, getOrderId(bizEntity), flowRoundId);
 
-        afterProcess(bizEntity);
+        // 维护待办索引
+        recorder.phase(FlowMetrics.PHASE_PENDING_TASKS);
+        syncPendingTasks(Collections.singletonList(bizEntity));
+
+        if (!optimistic) {
+            recorder.phase(FlowMetrics.PHASE_AFTER_PROCESS);
+            persist(bizEntity);
+        }
         return canHandleFlows;
     }
 
+    /**
+     * 工作单元中配置了getEntityMapper时登记单据的updateById，与审批日志一起批量写入，然后调用afterProcess
+     */
+    private void persist(T bizEntity) {
+        if (flowUnitOfWork.isActive() && getEntityMapper() != null) {
+            flowUnitOfWork.addEntityUpdate(getEntityMapper(), bizEntity, getOrderId(bizEntity));
+        }
+        afterProcess(bizEntity);
+    }
+
+    /**
+     * 通过reloadEntity读取单据的最新数据，覆盖当前对象的审批状态、审批状态json、回合ID和版本字段，其它业务字段保持不变
+     */
+    private void refreshFlowFields(T bizEntity, ConcurrencyStrategy strategy) {
+        T latest = reloadEntity(bizEntity);
+        if (latest == null) {
+            throw new FlowException(10033, "Method reloadEntity must be overridden when concurrency strategy is " + strategy + ".");
+        }
+        ClassUtils.copyFieldValue(latest, bizEntity, getApprovalStatusField());
+        ClassUtils.copyFieldValue(latest, bizEntity, getApprovalStatusJsonField());
+        ClassUtils.copyFieldValue(latest, bizEntity, getAroundIdField());
+        if (StringUtils.isNotBlank(getFlowVersionField())) {
+            ClassUtils.copyFieldValue(latest, bizEntity, getFlowVersionField());
+        }
+        if (StringUtils.isNotBlank(getVersionField())) {
+            ClassUtils.copyFieldValue(latest, bizEntity, getVersionField());
+        }
+    }
+
+    /**
+     * 重新读取单据，但保留本次处理开启的回合ID及其流程定义版本
+     */
+    private void refreshFlowFieldsKeepingRound(T bizEntity, ConcurrencyStrategy strategy) {
+        Long roundId = ClassUtils.getLongValue(bizEntity, getAroundIdField());
+        Long flowVersion = StringUtils.isNotBlank(getFlowVersionField()) ? ClassUtils.getLongValue(bizEntity, getFlowVersionField()) : null;
+        refreshFlowFields(bizEntity, strategy);
+        ClassUtils.setFieldValue(bizEntity, getAroundIdField(), roundId);
+        if (flowVersion != null) {
+            ClassUtils.setFieldValue(bizEntity, getFlowVersionField(), flowVersion);
+        }
+    }
+
+    private Long getOrderId(T bizEntity) {
+        return ClassUtils.getLongValue(bizEntity, getIdFiled());
+    }
+
+    /**
+     * 批量处理入口，不开启新的审批回合，适用于一次审批大量单据的场景
+     *
+     * @param bizEntities 实体对象列表
+     * @param action      审批动作
+     * @param comment     审批意见
+     * @param user        处理用户
+     * @return 每个单据的处理结果，顺序与bizEntities一致
+     */
+    public FlowBatchResultVo<T> processBatch(List<T> bizEntities, String action, String comment, String user) {
+        return processBatch(bizEntities, action, comment, user, false, false);
+    }
+
+    /**
+     * 批量处理入口，参数含义与process()一致
+     * 按流程定义版本和当前审批状态分组，同一组内只查找一次当前环节，相同的待处理环节只校验一次权限；
+     * 并签且使用LOG_QUERY策略时，一次查询出所有单据回合内已处理的环节；
+     * 所有单据的审批日志通过一次saveFlowLogs写入，最后调用afterProcessBatch
+     * 单个单据处理失败时记录在返回结果中，不影响其他单据；写入审批日志或afterProcessBatch失败时抛出异常
+     * 并发控制和工作单元与process()一致：LOCK按分段顺序一次获取所有单据的锁，加锁后重新读取审批状态字段；
+     * OPTIMISTIC需要按单据重试，逐个调用process()，此时不调用afterProcessBatch；
+     * 开启capsule.flow.unit-of-work.enabled时整批在一个事务中处理，审批日志和getEntityMapper指定的单据更新在事务结束前批量写入
+     *
+     * @param bizEntities 实体对象列表
+     * @param action      审批动作
+     * @param comment     提交或者审批意见
+     * @param user        处理用户
+     * @param isSubmit    是否是提交动作
+     * @param isRestart   是否开启新的审批回合
+     * @return 每个单据的处理结果，顺序与bizEntities一致
+     */
+    public FlowBatchResultVo<T> processBatch(List<T> bizEntities, String action, String comment, String user, boolean isSubmit, boolean isRestart) {
+        if (CollectionUtils.isEmpty(bizEntities)) {
+            throw new FlowException(10028, "Business entity list can not be empty.");
+        }
+        ConcurrencyStrategy strategy = flowProperties.getConcurrency().getStrategy();
+        if (strategy == ConcurrencyStrategy.OPTIMISTIC) {
+            return processEach(bizEntities, action, comment, user, isSubmit, isRestart);
+        }
+        FlowMetrics.Recorder recorder = flowMetrics.processBatch(getFlowName(), getEntityName(), action);
+        List<ReentrantLock> locks = Collections.emptyList();
+        FlowReadContext.beginWrite();
+        try {
+            // 尚未保存的单据不会被并发处理，无需加锁
+            if (strategy == ConcurrencyStrategy.LOCK) {
+                recorder.phase(FlowMetrics.PHASE_LOCK);
+                List<Long> orderIds = new ArrayList<>();
+                for (T bizEntity : bizEntities) {
+                    Long orderId = bizEntity == null ? null : getOrderId(bizEntity);
+                    if (orderId != null) {
+                        orderIds.add(orderId);
+                    }
+                }
+                locks = flowLockManager.lockAll(getFlowName(), getEntityName(), orderIds);
+            }
+            boolean refresh = strategy == ConcurrencyStrategy.LOCK;
+            if (!flowProperties.getUnitOfWork().isEnabled()) {
+                return doProcessBatch(bizEntities, action, comment, user, isSubmit, isRestart, refresh, recorder);
+            }
+            // 在一个事务中处理，结束时批量写入审批日志和单据
+            return flowUnitOfWork.execute(() -> {
+                FlowBatchResultVo<T> result = doProcessBatch(bizEntities, action, comment, user, isSubmit, isRestart, refresh, recorder);
+                recorder.phase(FlowMetrics.PHASE_FLUSH);
+                return result;
+            });
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            for (ReentrantLock lock : locks) {
+                flowLockManager.unlock(lock);
+            }
+            FlowReadContext.endWrite();
+            recorder.stop();
+        }
+    }
+
+    /**
+     * OPTIMISTIC策略下逐个单据调用process()，冲突时按单据重新读取并重试
+     */
+    private FlowBatchResultVo<T> processEach(List<T> bizEntities, String action, String comment, String user, boolean isSubmit, boolean isRestart) {
+        // 工作单元加入调用方事务时，单据处理失败已使外层事务只能回滚，不能只记录在结果中
+        boolean joined = flowProperties.getUnitOfWork().isEnabled() && TransactionSynchronizationManager.isActualTransactionActive();
+        FlowBatchResultVo<T> result = new FlowBatchResultVo<>();
+        for (T bizEntity : bizEntities) {
+            FlowBatchItemVo<T> item = new FlowBatchItemVo<T>().setBizEntity(bizEntity);
+            result.getItems().add(item);
+            try {
+                item.setSuccess(true).setHandledFlows(process(bizEntity, action, comment, user, isSubmit, isRestart));
+            } catch (RuntimeException e) {
+                if (joined) {
+                    throw e;
+                }
+                new BatchEntry<>(bizEntity, item).fail(e);
+            }
+        }
+        return result;
+    }
+
+    private FlowBatchResultVo<T> doProcessBatch(List<T> bizEntities, String action, String comment, String user, boolean isSubmit, boolean isRestart,
+                                                boolean refresh, FlowMetrics.Recorder recorder) {
+        FlowBatchResultVo<T> result = new FlowBatchResultVo<>();
+        List<BatchEntry<T>> entries = new ArrayList<>();
+        for (T bizEntity : bizEntities) {
+            FlowBatchItemVo<T> item = new FlowBatchItemVo<T>().setBizEntity(bizEntity);
+            result.getItems().add(item);
+            entries.add(new BatchEntry<>(bizEntity, item));
+        }
+
+        // 校验参数，加锁时重新读取审批状态，判断是否需要新开启一轮新的审批
+        recorder.phase(FlowMetrics.PHASE_VERIFY);
+        for (BatchEntry<T> entry : entries) {
+            try {
+                verifyParam(entry.bizEntity, action, comment, user);
+                if (refresh && getOrderId(entry.bizEntity) != null) {
+                    refreshFlowFields(entry.bizEntity, ConcurrencyStrategy.LOCK);
+                }
+                entry.roundId = setFlowRoundId(entry.bizEntity, user, isRestart);
+                entry.approvalStatus = ClassUtils.getStringValue(entry.bizEntity, getApprovalStatusField());
+                if (StringUtils.isBlank(entry.approvalStatus)) {
+                    throw new FlowException(10016, "You have not initial approvalStatus field.");
+                }
+            } catch (RuntimeException e) {
+                entry.fail(e);
+            }
+        }
+
+        // 按流程定义版本和审批状态分组查找当前环节
+        recorder.phase(FlowMetrics.PHASE_FIND_CURRENT_FLOWS);
+        Map<FlowDefinition, Map<String, List<BatchEntry<T>>>> groups = new LinkedHashMap<>();
+        for (BatchEntry<T> entry : entries) {
+            if (!entry.failed()) {
+                try {
+                    entry.definition = getFlowDefinition(entry.bizEntity);
+                    groups.computeIfAbsent(entry.definition, k -> new LinkedHashMap<>())
+                            .computeIfAbsent(entry.approvalStatus, k -> new ArrayList<>()).add(entry);
+                } catch (RuntimeException e) {
+                    entry.fail(e);
+                }
+            }
+        }
+        for (Map.Entry<FlowDefinition, Map<String, List<BatchEntry<T>>>> definitionGroup : groups.entrySet()) {
+            for (Map.Entry<String, List<BatchEntry<T>>> group : definitionGroup.getValue().entrySet()) {
+                findBatchCurrentFlows(definitionGroup.getKey(), group.getKey(), group.getValue(), action);
+            }
+        }
+
+        // 相同版本下相同的待处理环节只校验一次权限
+        recorder.phase(FlowMetrics.PHASE_AUTH_PERMISSION);
+        Map<List<Object>, List<FlowBasic>> permissions = new HashMap<>();
+        for (BatchEntry<T> entry : entries) {
+            if (entry.failed()) {
+                continue;
+            }
+            try {
+                List<Object> key = new ArrayList<>();
+                key.add(entry.definition.getVersion());
+                for (FlowBasic flowBasic : entry.currentFlows) {
+                    key.add(flowBasic.getId());
+                }
+                List<FlowBasic> canHandleFlows = permissions.get(key);
+                if (canHandleFlows == null) {
+                    canHandleFlows = authPermission(entry.currentFlows, user);
+                    permissions.put(key, canHandleFlows);
+                }
+                if (CollectionUtils.isEmpty(canHandleFlows)) {
+                    throw new FlowException(10009, "Current user does not have permission to handle this flow.");
+                }
+                entry.canHandleFlows = canHandleFlows;
+            } catch (RuntimeException e) {
+                entry.fail(e);
+            }
+        }
+
+        // 逐个单据流转状态，汇总审批日志
+        recorder.phase(FlowMetrics.PHASE_START_PROCESS);
+        List<FlowLog> flowLogs = new ArrayList<>();
+        List<BatchEntry<T>> handledEntries = new ArrayList<>();
+        for (BatchEntry<T> entry : entries) {
+            if (entry.failed()) {
+                continue;
+            }
+            try {
+                String nextStatus = startProcess(entry.currentFlows, entry.canHandleFlows, entry.bizEntity);
+                if (isSubmit) {
+                    setSubmitField(entry.bizEntity, comment, user);
+                } else {
+                    setAuditField(entry.bizEntity, comment, user);
+                }
+                flowLogs.addAll(buildFlowLogs(entry.canHandleFlows, nextStatus, comment, user,
+                        ClassUtils.getLongValue(entry.bizEntity, getIdFiled()), entry.roundId));
+                handledEntries.add(entry);
+            } catch (RuntimeException e) {
+                entry.fail(e);
+            }
+        }
+
+        // 一次保存所有审批日志
+        recorder.phase(FlowMetrics.PHASE_SAVE_FLOW_LOGS);
+        if (!flowLogs.isEmpty()) {
+            saveFlowLogs(flowLogs);
+        }
+
+        recorder.phase(FlowMetrics.PHASE_PENDING_TASKS);
+        List<T> handledEntities = new ArrayList<>();
+        for (BatchEntry<T> entry : handledEntries) {
+            handledEntities.add(entry.bizEntity);
+        }
+        syncPendingTasks(handledEntities);
+
+        recorder.phase(FlowMetrics.PHASE_AFTER_PROCESS);
+        if (!handledEntities.isEmpty()) {
+            if (flowUnitOfWork.isActive() && getEntityMapper() != null) {
+                for (T bizEntity : handledEntities) {
+                    flowUnitOfWork.addEntityUpdate(getEntityMapper(), bizEntity, getOrderId(bizEntity));
+                }
+            }
+            afterProcessBatch(handledEntities);
+        }
+        for (BatchEntry<T> entry : handledEntries) {
+            entry.item.setSuccess(true).setHandledFlows(entry.canHandleFlows);
+        }
+        return result;
+    }
+
+    /**
+     * 查找同一流程定义版本、同一审批状态下所有单据的当前环节，非并签时整组只查找一次
+     */
+    private void findBatchCurrentFlows(FlowDefinition definition, String approvalStatus, List<BatchEntry<T>> entries, String action) {
+        FlowStatus status = definition.getGraph().status(approvalStatus);
+        if (!status.isAnd()) {
+            try {
+                BatchEntry<T> first = entries.get(0);
+                List<FlowBasic> currentFlows = findCurrentFlows(first.bizEntity, approvalStatus, action, first.roundId);
+                if (CollectionUtils.isEmpty(currentFlows)) {
+                    throw new FlowException(10017, "Next flow not found before " + approvalStatus + " with action " + action + ".");
+                }
+                for (BatchEntry<T> entry : entries) {
+                    entry.currentFlows = copyOf(currentFlows);
+                }
+            } catch (RuntimeException e) {
+                for (BatchEntry<T> entry : entries) {
+                    entry.fail(e);
+                }
+            }
+            return;
+        }
+        Map<Long, Set<String>> handledSteps = null;
+        if (!isStatusJsonJoin()) {
+            Set<Long> roundIds = new HashSet<>();
+            for (BatchEntry<T> entry : entries) {
+                if (entry.roundId != null) {
+                    roundIds.add(entry.roundId);
+                }
+            }
+            handledSteps = findHandledSteps(status, action, roundIds);
+        }
+        for (BatchEntry<T> entry : entries) {
+            try {
+                List<FlowBasic> currentFlows = handledSteps == null
+                        ? findCurrentFlows(entry.bizEntity, approvalStatus, action, entry.roundId)
+                        : findWaitingFlows(definition, status, handledSteps.getOrDefault(entry.roundId, Collections.emptySet()), action);
+                if (CollectionUtils.isEmpty(currentFlows)) {
+                    throw new FlowException(10017, "Next flow not found before " + approvalStatus + " with action " + action + ".");
+                }
+                entry.currentFlows = currentFlows;
+            } catch (RuntimeException e) {
+                entry.fail(e);
+            }
+        }
+    }
+
+    /**
+     * 批量处理后的回调方法，默认逐个调用afterProcess，子类可以复写为批量持久化，如updateBatchById
+     *
+     * @param bizEntities 处理成功的业务实体
+     */
+    protected void afterProcessBatch(List<T> bizEntities) {
+        for (T bizEntity : bizEntities) {
+            afterProcess(bizEntity);
+        }
+    }
+
     /**
      * 审批流处理后的回调方法，比如需要持久化到数据库的操作，可以放到此方法中进行
      *
@@ -131,7 +591,45 @@ public abstract class AbstractFlowHandler<T> {
 
     }
 
+    /**
+     * 从数据库重新读取单据，LOCK和OPTIMISTIC并发控制策略下必须复写，通常为return service.getById(id)
+     *
+     * @param bizEntity 当前处理的业务实体
+     * @return 数据库中的最新单据，默认返回null表示不支持
+     */
+    protected T reloadEntity(T bizEntity) {
+        return null;
+    }
+
+    /**
+     * 单据的Mapper，开启capsule.flow.unit-of-work.enabled时引擎会在事务结束前通过该Mapper批量执行updateById，
+     * 此时afterProcess中不需要再更新单据；默认返回null，由afterProcess自行持久化
+     *
+     * @return 单据的Mapper
+     */
+    protected Class<? extends BaseMapper<T>> getEntityMapper() {
+        return null;
+    }
+
     protected void saveFlowLogs(List<FlowBasic> canHandleFlows, String nextStatus, String comment, String user, Long orderId, Long flowRoundId) {
+        saveFlowLogs(buildFlowLogs(canHandleFlows, nextStatus, comment, user, orderId, flowRoundId));
+    }
+
+    /**
+     * 保存审批日志，单个处理和批量处理最终都通过此方法写入；开启capsule.flow.log-writer.async时异步批量写入
+     * 处于工作单元中时只登记，在事务结束前与单据更新一起批量写入
+     *
+     * @param flowLogs 审批日志
+     */
+    protected void saveFlowLogs(List<FlowLog> flowLogs) {
+        if (flowUnitOfWork.isActive()) {
+            flowUnitOfWork.addFlowLogs(flowLogs);
+            return;
+        }
+        flowLogWriter.write(flowLogs);
+    }
+
+    protected List<FlowLog> buildFlowLogs(List<FlowBasic> canHandleFlows, String nextStatus, String comment, String user, Long orderId, Long flowRoundId) {
         List<FlowLog> logs = new ArrayList<>();
         for (FlowBasic flowBasic : canHandleFlows) {
             logs.add(new FlowLog().setEntityName(getEntityName()).setFlowName(getFlowName())
@@ -139,7 +637,7 @@ public abstract class AbstractFlowHandler<T> {
                     .setPrevStatus(flowBasic.getPrevStatus()).setCreatedBy(user).setOrderId(orderId)
                     .setAction(flowBasic.getAction()));
         }
-        flowLogService.saveBatch(logs);
+        return logs;
     }
 
     protected void setAuditField(T bizEntity, String comment, String user) {
@@ -168,47 +666,35 @@ public abstract class AbstractFlowHandler<T> {
         if (StringUtils.isBlank(approvalStatus) || StringUtils.isBlank(approvalStatusJson)) {
             throw new FlowException(10016, "You have not initial approvalStatus or approvalStatusJson field.");
         }
-        JSONObject json = JSONObject.parseObject(approvalStatusJson);
+        FlowGraph graph = getFlowDefinition(bizEntity).getGraph();
+        FlowStatus status = graph.status(approvalStatus);
         String nextStatus;
         // 并签场景，且没有审批完成，且是正向操作，需要等待所有节点都处理完成
-        if (approvalStatus.contains(EX_AND) && currentFlows.size() > canHandleFlows.size() && canHandleFlows.get(0).getTaskOrder() > 0) {
+        if (status.isAnd() && currentFlows.size() > canHandleFlows.size() && canHandleFlows.get(0).getTaskOrder() > 0) {
+            StepState state = StepState.parse(status, approvalStatusJson);
             for (FlowBasic flowBasic : canHandleFlows) {
-                json.put(flowBasic.getPrevStatus(), 1);
+                state.handle(flowBasic.getPrevStatus());
             }
             nextStatus = canHandleFlows.get(0).getNextStatus();
-            ClassUtils.setFieldValue(bizEntity, getApprovalStatusJsonField(), JSON.toJSONString(json));
+            ClassUtils.setFieldValue(bizEntity, getApprovalStatusJsonField(), state.format(getStatusFormat()));
             return nextStatus;
         }
         nextStatus = findNextStatus(bizEntity, canHandleFlows.get(0).getNextStatus());
         ClassUtils.setFieldValue(bizEntity, getApprovalStatusField(), nextStatus);
-        json = new JSONObject();
-        if (nextStatus.contains(EX_AND)) {
-            String[] steps = nextStatus.split(EX_AND);
-            for (String step : steps) {
-                json.put(step, 0);
-            }
-        } else if (nextStatus.contains(EX_OR)) {
-            String[] steps = nextStatus.split(EX_OR_ESCAPE);
-            for (String step : steps) {
-                json.put(step, 0);
-            }
-        } else {
-            json.put(nextStatus, 0);
-        }
-        ClassUtils.setFieldValue(bizEntity, getApprovalStatusJsonField(), json.toJSONString());
+        ClassUtils.setFieldValue(bizEntity, getApprovalStatusJsonField(), StepState.pending(graph.status(nextStatus)).format(getStatusFormat()));
         return nextStatus;
     }
 
     /**
-     * 如果NEXT STATUS是表达式，需要使用beetl规则引擎工具类解析一下
+     * 如果NEXT STATUS是表达式，需要按getRuleEngine()指定的规则引擎解析一下
      *
      * @param bizEntity  业务实体
      * @param nextStatus 下一个状态
      * @return 解析后的下一个状态
      */
     protected String findNextStatus(T bizEntity, String nextStatus) {
-        if (nextStatus.startsWith("<%") && nextStatus.endsWith("%>")) {
-            return RuleUtils.render(nextStatus, "vo", bizEntity);
+        if (FlowGraph.isRule(nextStatus)) {
+            return RuleUtils.evaluate(getRuleEngine(), nextStatus, "vo", bizEntity);
         } else {
             return nextStatus;
         }
@@ -217,7 +703,7 @@ public abstract class AbstractFlowHandler<T> {
     /**
      * 根据当前用户，一级FlowBasic的handleRoles信息校验权限，返回有权限处理的Flow列表，无权限返回空即可，交给用户在子类中实现
      *
-     * @param currentFlows 当前状态下的所有待处理环节
+     * @param currentFlows 当前状态下的所有待处理环节，为缓存中审批环节的副本
      * @param user         当前操作用户
      * @return
      */
@@ -225,6 +711,7 @@ public abstract class AbstractFlowHandler<T> {
 
     /**
      * 获取当前状态下的，当前审批动作时的所有审批环节，单签时只有一个，会签或者并签时会有多个，并签时不包括已经审批完毕的审批环节
+     * 按当前最新的流程定义查询，流程处理时不再调用此方法，定制查找逻辑请复写findCurrentFlows(FlowDefinition, String, String, Long)
      *
      * @param approvalStatus 当前状态
      * @param action         提交、审批或驳回等
@@ -232,35 +719,167 @@ public abstract class AbstractFlowHandler<T> {
      * @return 当前审批状态下所有需要处理的审批环节
      */
     protected List<FlowBasic> findCurrentFlows(String approvalStatus, String action, Long roundId) {
-        List<FlowBasic> flowBasicList = new ArrayList<>();
-        List<String> waitingForHandledSteps = new ArrayList<>();
-        if (approvalStatus.contains(EX_AND)) {
-            String[] steps = approvalStatus.split(EX_AND);
-            for (String step : steps) {
-                FlowLog flowLog = flowLogService.getOne(new LambdaQueryWrapper<FlowLog>()
-                        .eq(FlowLog::getRoundId, roundId)
-                        .eq(StringUtils.isNotBlank(action), FlowLog::getAction, action)
-                        .eq(FlowLog::getPrevStatus, step));
-                if (flowLog == null) {
-                    waitingForHandledSteps.add(step);
-                }
+        return findCurrentFlows(getFlowDefinition(), approvalStatus, action, roundId);
+    }
+
+    /**
+     * 按指定版本的流程定义获取当前状态下的所有审批环节，流程处理时按单据所属回合的定义版本调用此方法，需要定制时在子类中复写此方法
+     *
+     * @param definition     流程定义，回合开始时的版本
+     * @param approvalStatus 当前状态
+     * @param action         提交、审批或驳回等
+     * @param roundId        回合id，用于并签时，通过查询审批日志判断哪些已经审批完成了，过滤掉
+     * @return 当前审批状态下所有需要处理的审批环节
+     */
+    protected List<FlowBasic> findCurrentFlows(FlowDefinition definition, String approvalStatus, String action, Long roundId) {
+        FlowStatus status = definition.getGraph().status(approvalStatus);
+        Set<String> handledSteps = Collections.emptySet();
+        if (status.isAnd()) {
+            // 一次查询出当前回合内所有已处理的环节，避免每个环节查询一次
+            handledSteps = findHandledSteps(status, action, Collections.singleton(roundId)).getOrDefault(roundId, Collections.emptySet());
+        }
+        return findWaitingFlows(definition, status, handledSteps, action);
+    }
+
+    /**
+     * 查询回合内并签状态下已处理的环节
+     *
+     * @param status   并签状态
+     * @param action   审批动作，为空时不限制
+     * @param roundIds 回合id集合
+     * @return 回合id -> 已处理的环节
+     */
+    private Map<Long, Set<String>> findHandledSteps(FlowStatus status, String action, Collection<Long> roundIds) {
+        Map<Long, Set<String>> handledSteps = new HashMap<>();
+        if (CollectionUtils.isEmpty(roundIds)) {
+            return handledSteps;
+        }
+        List<FlowLog> handledLogs = flowLogService.list(new LambdaQueryWrapper<FlowLog>()
+                .select(FlowLog::getRoundId, FlowLog::getPrevStatus)
+                .in(FlowLog::getRoundId, roundIds)
+                .eq(StringUtils.isNotBlank(action), FlowLog::getAction, action)
+                .in(FlowLog::getPrevStatus, status.getSteps()));
+        for (FlowLog flowLog : handledLogs) {
+            handledSteps.computeIfAbsent(flowLog.getRoundId(), k -> new HashSet<>()).add(flowLog.getPrevStatus());
+        }
+        // 合并异步写入时尚未落库的审批日志
+        for (FlowLog flowLog : flowLogWriter.findUnflushed(roundIds)) {
+            if ((StringUtils.isBlank(action) || action.equals(flowLog.getAction())) && status.getSteps().contains(flowLog.getPrevStatus())) {
+                handledSteps.computeIfAbsent(flowLog.getRoundId(), k -> new HashSet<>()).add(flowLog.getPrevStatus());
             }
+        }
+        return handledSteps;
+    }
 
-        } else if (approvalStatus.contains(EX_OR)) {
-            String[] steps = approvalStatus.split(EX_OR_ESCAPE);
-            waitingForHandledSteps.addAll(Arrays.asList(steps));
-        } else {
-            waitingForHandledSteps.add(approvalStatus);
+    private List<FlowBasic> findWaitingFlows(FlowDefinition definition, FlowStatus status, Set<String> handledSteps, String action) {
+        List<String> waitingForHandledSteps = new ArrayList<>();
+        for (String step : status.getSteps()) {
+            if (!handledSteps.contains(step)) {
+                waitingForHandledSteps.add(step);
+            }
         }
         if (CollectionUtils.isEmpty(waitingForHandledSteps)) {
             throw new FlowException(10008, "No waiting for handle steps.");
         }
-        flowBasicList.addAll(flowBasicService.list(new LambdaQueryWrapper<FlowBasic>()
-                .in(StringUtils.isNotBlank(action), FlowBasic::getAction, action)
-                .in(FlowBasic::getPrevStatus, waitingForHandledSteps)
-                .eq(FlowBasic::getEntityName, getEntityName())
-                .eq(FlowBasic::getFlowName, getFlowName())));
-        return flowBasicList;
+        return copyOf(definition.findByPrevStatus(waitingForHandledSteps, action));
+    }
+
+    /**
+     * 复制审批环节，流程定义缓存中的FlowBasic被所有请求共享，交给authPermission及process()调用方的都是副本
+     */
+    private static List<FlowBasic> copyOf(List<FlowBasic> flowBasics) {
+        List<FlowBasic> copies = new ArrayList<>(flowBasics.size());
+        for (FlowBasic flowBasic : flowBasics) {
+            copies.add(new FlowBasic().setId(flowBasic.getId()).setFlowName(flowBasic.getFlowName())
+                    .setEntityName(flowBasic.getEntityName()).setPrevStatus(flowBasic.getPrevStatus())
+                    .setPrevStatusAlias(flowBasic.getPrevStatusAlias()).setAction(flowBasic.getAction())
+                    .setNextStatus(flowBasic.getNextStatus()).setNextStatusAlias(flowBasic.getNextStatusAlias())
+                    .setHandleRoles(flowBasic.getHandleRoles()).setTaskOrder(flowBasic.getTaskOrder())
+                    .setLastTask(flowBasic.getLastTask()).setDeleted(flowBasic.getDeleted())
+                    .setCreatedBy(flowBasic.getCreatedBy()).setCreateTime(flowBasic.getCreateTime())
+                    .setUpdatedBy(flowBasic.getUpdatedBy()).setUpdateTime(flowBasic.getUpdateTime()));
+        }
+        return copies;
+    }
+
+    /**
+     * 按getJoinStrategy()获取当前状态下的所有待处理环节
+     * STATUS_JSON策略下并签环节的完成情况直接从approvalStatusJson字段读取（startProcess中维护，值为1表示已处理），不查询审批日志；
+     * 已处理的环节只排除其正向环节（taskOrder>0），与按审批动作查询日志的结果保持一致；action为空时排除已处理环节的所有环节
+     * OPTIMISTIC并发控制策略下approvalStatusJson随单据一起按版本更新，是唯一可靠的并签状态，此时总是按STATUS_JSON处理
+     * 开启capsule.flow.log-writer.async时尚未落库的审批日志只有当前节点可见，此时也总是按STATUS_JSON处理
+     *
+     * @param bizEntity      业务实体
+     * @param approvalStatus 当前状态
+     * @param action         提交、审批或驳回等
+     * @param roundId        回合id
+     * @return 当前审批状态下所有需要处理的审批环节
+     */
+    protected List<FlowBasic> findCurrentFlows(T bizEntity, String approvalStatus, String action, Long roundId) {
+        String approvalStatusJson = ClassUtils.getStringValue(bizEntity, getApprovalStatusJsonField());
+        FlowDefinition definition = getFlowDefinition(bizEntity);
+        FlowStatus status = definition.getGraph().status(approvalStatus);
+        if (!isStatusJsonJoin() || !status.isAnd() || StringUtils.isBlank(approvalStatusJson)) {
+            return findCurrentFlows(definition, approvalStatus, action, roundId);
+        }
+        StepState state = StepState.parse(status, approvalStatusJson);
+        if (state.isAllHandled()) {
+            throw new FlowException(10008, "No waiting for handle steps.");
+        }
+        List<FlowBasic> flowBasicList = new ArrayList<>();
+        for (FlowBasic flowBasic : definition.findByPrevStatus(status.getSteps(), action)) {
+            boolean handled = state.isHandled(flowBasic.getPrevStatus());
+            if (handled && (StringUtils.isBlank(action) || flowBasic.getTaskOrder() > 0)) {
+                continue;
+            }
+            flowBasicList.add(flowBasic);
+        }
+        return copyOf(flowBasicList);
+    }
+
+    /**
+     * 并签时是否按approvalStatusJson判断已处理环节：配置为STATUS_JSON，或OPTIMISTIC并发控制、异步写入审批日志时审批日志不可靠
+     */
+    private boolean isStatusJsonJoin() {
+        return getJoinStrategy() == JoinStrategy.STATUS_JSON
+                || flowProperties.getConcurrency().getStrategy() == ConcurrencyStrategy.OPTIMISTIC
+                || flowLogWriter.isAsync();
+    }
+
+    /**
+     * 并签时判断已处理环节的策略，默认取capsule.flow.join-strategy配置，子类可以复写为某条流程单独指定
+     *
+     * @return JoinStrategy
+     */
+    public JoinStrategy getJoinStrategy() {
+        return flowProperties.getJoinStrategy();
+    }
+
+    /**
+     * approvalStatusJson字段的写入格式，默认取capsule.flow.status-format配置，子类可以复写为某条流程单独指定
+     *
+     * @return StatusFormat
+     */
+    public StatusFormat getStatusFormat() {
+        return flowProperties.getStatusFormat();
+    }
+
+    /**
+     * 解析nextStatus规则表达式的引擎，默认取capsule.flow.rule.engine配置，子类可以复写为某条流程单独指定
+     *
+     * @return RuleEngine
+     */
+    public RuleEngine getRuleEngine() {
+        return flowProperties.getRule().getEngine();
+    }
+
+    /**
+     * getFlowMetaInfo(List)并行求值分支规则使用的线程池，默认为容器中名为flowMetaInfoExecutor的Bean，返回null时在调用线程中依次求值
+     *
+     * @return Executor
+     */
+    protected Executor getMetaInfoExecutor() {
+        return flowMetaInfoExecutor;
     }
 
     /**
@@ -275,14 +894,38 @@ public abstract class AbstractFlowHandler<T> {
     protected Long setFlowRoundId(T bizEntity, String user, boolean isSubmit) {
         if (isSubmit) { // 开启新的回合则创建新的FlowRound
             FlowRound flowRound = new FlowRound().setCreatedBy(user).setChangeRecord(null);
-            flowRoundService.save(flowRound); // 保存自动生成ID
+            saveFlowRound(flowRound);
             ClassUtils.setFieldValue(bizEntity, getAroundIdField(), flowRound.getId());
+            // 新回合按最新版本的流程定义流转
+            if (StringUtils.isNotBlank(getFlowVersionField())) {
+                ClassUtils.setFieldValue(bizEntity, getFlowVersionField(), getFlowDefinition().getVersion());
+            }
             return flowRound.getId();
         }
         // 不需要开启新的回合则返回旧的FlowRound
         return ClassUtils.getLongValue(bizEntity, getAroundIdField());
     }
 
+    /**
+     * 保存新的回合并回填ID：RoundIdGenerator预先生成ID时，处于工作单元中则延迟到事务结束前与审批日志一起批量写入，否则立即写入；
+     * 未预先生成ID时通过数据库自增生成
+     *
+     * @param flowRound 新的回合
+     */
+    protected void saveFlowRound(FlowRound flowRound) {
+        Long roundId = roundIdGenerator.nextId();
+        if (roundId == null) {
+            flowRoundService.save(flowRound); // 保存自动生成ID
+            return;
+        }
+        flowRound.setId(roundId).setCreateTime(LocalDateTime.now());
+        if (flowUnitOfWork.isActive()) {
+            flowUnitOfWork.addFlowRound(flowRound);
+        } else {
+            flowRoundService.saveWithId(flowRound);
+        }
+    }
+
     /**
      * 默认的校验参数，实际业务如果有特殊要求，可在子类中复写
      *
@@ -311,20 +954,96 @@ public abstract class AbstractFlowHandler<T> {
 
     /**
      * 初始化approvalStatus和approvalStatusJson字段为初始状态值
+     * 开启待办索引时，如果单据已有id会同时写入待办索引；新建单据保存后需要调用syncPendingTasks
      *
      * @param bizEntity 业务实体
      */
     public void initApprovalStatus(T bizEntity) {
-        FlowBasic flowBasic = flowBasicService.getOne(new LambdaQueryWrapper<FlowBasic>()
-                .eq(FlowBasic::getFlowName, getFlowName()).eq(FlowBasic::getTaskOrder, 1)
-                .eq(FlowBasic::getEntityName, getEntityName()));
-        if (flowBasic == null) {
+        List<FlowBasic> firstFlows = getFlowDefinition().getByTaskOrder(1);
+        if (CollectionUtils.isEmpty(firstFlows)) {
             throw new FlowException(10017, "You have not config the first task for current flow:" + getFlowName());
         }
+        if (firstFlows.size() > 1) {
+            throw new FlowException(10019, "Only one flow with task order 1.");
+        }
+        FlowBasic flowBasic = firstFlows.get(0);
         ClassUtils.setFieldValue(bizEntity, getApprovalStatusField(), flowBasic.getPrevStatus());
-        JSONObject json = new JSONObject();
-        json.put(flowBasic.getPrevStatus(), 0);
-        ClassUtils.setFieldValue(bizEntity, getApprovalStatusJsonField(), json.toJSONString());
+        StepState state = StepState.pending(getFlowDefinition().getGraph().status(flowBasic.getPrevStatus()));
+        ClassUtils.setFieldValue(bizEntity, getApprovalStatusJsonField(), state.format(getStatusFormat()));
+        if (ClassUtils.getLongValue(bizEntity, getIdFiled()) != null) {
+            syncPendingTasks(Collections.singletonList(bizEntity));
+        }
+    }
+
+    /**
+     * 按单据当前的approvalStatusJson重建待办索引（FLOW_PENDING_TASK），未开启capsule.flow.pending-task.enabled时不做任何处理
+     * 引擎在process()、processBatch()和initApprovalStatus()中自动调用，新建单据保存生成id后需要手动调用一次
+     *
+     * @param bizEntity 业务实体
+     */
+    public void syncPendingTasks(T bizEntity) {
+        syncPendingTasks(Collections.singletonList(bizEntity));
+    }
+
+    private void syncPendingTasks(List<T> bizEntities) {
+        if (!flowProperties.getPendingTask().isEnabled() || bizEntities.isEmpty()) {
+            return;
+        }
+        List<Long> orderIds = new ArrayList<>();
+        List<FlowPendingTask> pendingTasks = new ArrayList<>();
+        for (T bizEntity : bizEntities) {
+            Long orderId = ClassUtils.getLongValue(bizEntity, getIdFiled());
+            if (orderId == null) {
+                throw new FlowException(10029, "Business entity id can not be empty when sync pending tasks.");
+            }
+            orderIds.add(orderId);
+            pendingTasks.addAll(buildPendingTasks(bizEntity, orderId));
+        }
+        FlowReadContext.beginWrite();
+        try {
+            flowPendingTaskService.replacePendingTasks(getFlowName(), getEntityName(), orderIds, pendingTasks);
+        } finally {
+            FlowReadContext.endWrite();
+        }
+    }
+
+    /**
+     * 根据approvalStatusJson中待处理的环节生成待办记录，与getTodoStatus的规则一致：
+     * 只包含配置了handleRoles的环节，每个角色一条记录，taskOrder为0或1的环节标记为待提交
+     *
+     * @param bizEntity 业务实体
+     * @param orderId   单据id
+     * @return 待办记录
+     */
+    protected List<FlowPendingTask> buildPendingTasks(T bizEntity, Long orderId) {
+        List<FlowPendingTask> pendingTasks = new ArrayList<>();
+        String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
+        String approvalStatusJson = ClassUtils.getStringValue(bizEntity, getApprovalStatusJsonField());
+        if (StringUtils.isBlank(approvalStatus) || StringUtils.isBlank(approvalStatusJson)) {
+            return pendingTasks;
+        }
+        Long roundId = ClassUtils.getLongValue(bizEntity, getAroundIdField());
+        FlowDefinition definition = getFlowDefinition(bizEntity);
+        StepState state = StepState.parse(definition.getGraph().status(approvalStatus), approvalStatusJson);
+        List<String> steps = state.getStatus().getSteps();
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < steps.size(); i++) {
+            if (state.isHandled(i)) {
+                continue;
+            }
+            String step = steps.get(i);
+            for (FlowBasic flowBasic : definition.findByPrevStatus(Collections.singleton(step), null)) {
+                int submitTask = FlowDefinition.isTodoTask(TodoEnum.ONLY_PENDING_SUBMIT, flowBasic.getTaskOrder()) ? 1 : 0;
+                for (String role : definition.getHandleRoles(flowBasic)) {
+                    if (keys.add(step + "\n" + role + "\n" + submitTask)) {
+                        pendingTasks.add(new FlowPendingTask().setFlowName(getFlowName()).setEntityName(getEntityName())
+                                .setOrderId(orderId).setRoundId(roundId).setPendingStatus(step)
+                                .setHandleRole(role).setSubmitTask(submitTask));
+                    }
+                }
+            }
+        }
+        return pendingTasks;
     }
 
     /**
@@ -333,8 +1052,7 @@ public abstract class AbstractFlowHandler<T> {
      * @return
      */
     public String getInitialStatus() {
-        List<FlowBasic> flowBasics = flowBasicService.list(new LambdaQueryWrapper<FlowBasic>().eq(FlowBasic::getFlowName, getFlowName())
-                .eq(FlowBasic::getEntityName, getEntityName()).eq(FlowBasic::getTaskOrder, 1));
+        List<FlowBasic> flowBasics = getFlowDefinition().getByTaskOrder(1);
         if (CollectionUtils.isEmpty(flowBasics)) {
             throw new FlowException(10018, "Flow with task order 1 not found.");
         }
@@ -350,8 +1068,7 @@ public abstract class AbstractFlowHandler<T> {
      * @return
      */
     public Set<String> getApprovedStatus() {
-        List<FlowBasic> flowBasics = flowBasicService.list(new LambdaQueryWrapper<FlowBasic>().eq(FlowBasic::getFlowName, getFlowName())
-                .eq(FlowBasic::getEntityName, getEntityName()).eq(FlowBasic::getLastTask, 1));
+        List<FlowBasic> flowBasics = getFlowDefinition().getByLastTask(1);
         if (CollectionUtils.isEmpty(flowBasics)) {
             throw new FlowException(10020, "There are not flow with task order 100.");
         }
@@ -370,8 +1087,7 @@ public abstract class AbstractFlowHandler<T> {
      * @return
      */
     public Set<String> getRejectedStatus() {
-        List<FlowBasic> flowBasics = flowBasicService.list(new LambdaQueryWrapper<FlowBasic>().eq(FlowBasic::getFlowName, getFlowName())
-                .eq(FlowBasic::getEntityName, getEntityName()).eq(FlowBasic::getLastTask, -1));
+        List<FlowBasic> flowBasics = getFlowDefinition().getByLastTask(-1);
         if (CollectionUtils.isEmpty(flowBasics)) {
             throw new FlowException(10021, "There are not flow with task order -1.");
         }
@@ -392,17 +1108,27 @@ public abstract class AbstractFlowHandler<T> {
      * @return true表示有权限
      */
     public boolean verifyHandleAccess(T bizEntity, String user) {
-        if (bizEntity == null || StringUtils.isBlank(user)) {
-            throw new FlowException(10022, "Business entity or user can not be empty when verify whether have handle access.");
-        }
-        String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
-        Long roundId = ClassUtils.getLongValue(bizEntity, getAroundIdField());
-        List<FlowBasic> currentSteps = findCurrentFlows(approvalStatus, null, roundId);
-        if (CollectionUtils.isEmpty(currentSteps)) {
-            return false;
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "verifyHandleAccess");
+        FlowReadContext.beginRead();
+        try {
+            if (bizEntity == null || StringUtils.isBlank(user)) {
+                throw new FlowException(10022, "Business entity or user can not be empty when verify whether have handle access.");
+            }
+            String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
+            Long roundId = ClassUtils.getLongValue(bizEntity, getAroundIdField());
+            List<FlowBasic> currentSteps = findCurrentFlows(bizEntity, approvalStatus, null, roundId);
+            if (CollectionUtils.isEmpty(currentSteps)) {
+                return false;
+            }
+            List<FlowBasic> canHandleFlow = authPermission(currentSteps, user);
+            return CollectionUtils.isNotEmpty(canHandleFlow);
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
         }
-        List<FlowBasic> canHandleFlow = authPermission(currentSteps, user);
-        return CollectionUtils.isNotEmpty(canHandleFlow);
     }
 
     /**
@@ -413,61 +1139,64 @@ public abstract class AbstractFlowHandler<T> {
      * @return 所有待办状态集合
      */
     public Set<String> getTodoStatus(TodoEnum todoEnum, Set<String> roles) {
-        Set<String> status = new HashSet<>();
-        LambdaUpdateWrapper<FlowBasic> wrapper = new LambdaUpdateWrapper<>();
-        wrapper.eq(FlowBasic::getFlowName, getFlowName());
-
-        if (todoEnum == TodoEnum.ONLY_PENDING_SUBMIT) {
-            wrapper.in(FlowBasic::getTaskOrder, 0, 1);
-        } else if (todoEnum == TodoEnum.ONLY_PENDING_APPROVAL) {
-            wrapper.ne(FlowBasic::getTaskOrder, 0).ne(FlowBasic::getTaskOrder, 1);
-        }
-        List<FlowBasic> flowBasics = flowBasicService.list(wrapper);
-        for (FlowBasic flowBasic : flowBasics) {
-            if (StringUtils.isBlank(flowBasic.getHandleRoles())) {
-                continue;
-            }
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "getTodoStatus");
+        FlowReadContext.beginRead();
+        try {
+            FlowDefinition definition = getFlowDefinition();
             if (CollectionUtils.isEmpty(roles)) {
-                status.add(flowBasic.getPrevStatus());
-            } else {
-                JSONArray array = JSON.parseArray(flowBasic.getHandleRoles());
-                for (int i = 0; i < array.size(); i++) {
-                    if (roles.contains(array.getString(i))) {
-                        status.add(flowBasic.getPrevStatus());
-                        break;
-                    }
-                }
+                return new HashSet<>(definition.getTodoStatus(todoEnum));
+            }
+            Set<String> status = new HashSet<>();
+            for (String role : roles) {
+                status.addAll(definition.getTodoStatus(todoEnum, role));
             }
+            return status;
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
         }
-        return status;
     }
 
     /**
      * 根据状态集合和APPROVAL_STATUS_JSON字段拼装查询sql语句，如果状态集合为空则直接返回空字符串
+     * BITSET格式下按包含该环节的状态表达式和环节下标判断位图中对应的字符，同时用LIKE匹配尚未迁移的JSON格式数据；
+     * 规则引擎解析出的、流程中未配置过的并签表达式无法预先得知，不会出现在条件中
      *
      * @param statusSet 状态集合
      * @param prefix    是否限制表前缀，“表名.”
      * @return Sql，例如：(APPROVAL_STATUS_JSON ->'$."Pending Submit"' = 0 or APPROVAL_STATUS_JSON ->'$."C"' = 0 or APPROVAL_STATUS_JSON ->'$."A"' = 0)
+     * BITSET格式例如：(APPROVAL_STATUS_JSON LIKE '%"A":0%' or (APPROVAL_STATUS = 'A&&B' and SUBSTRING(APPROVAL_STATUS_JSON, 1, 1) = '0'))
      */
     public String todoSql(Set<String> statusSet, String prefix) {
         if (CollectionUtils.isEmpty(statusSet)) {
             return "";
         }
-        StringBuilder sb = new StringBuilder();
-        sb.append("(");
-        int i = 0;
+        String tablePrefix = StringUtils.defaultString(prefix);
+        String statusColumn = tablePrefix + camelCase2LineSeparation(getApprovalStatusField());
+        String jsonColumn = tablePrefix + camelCase2LineSeparation(getApprovalStatusJsonField());
+        List<String> conditions = new ArrayList<>();
         for (String status : statusSet) {
-            if (StringUtils.isNotBlank(prefix)) {
-                sb.append(prefix);
+            if (getStatusFormat() != StatusFormat.BITSET) {
+                conditions.add(jsonColumn + " -> '$.\"" + status + "\"' = 0");
+                continue;
             }
-            sb.append(camelCase2LineSeparation(getApprovalStatusJsonField())).append(" -> '$.\"").append(status).append("\"' = 0");
-            if (i != statusSet.size() - 1) {
-                sb.append(" or ");
+            conditions.add(jsonColumn + " LIKE '%\"" + sqlLiteral(status) + "\":0%'");
+            for (FlowStatus flowStatus : getFlowDefinition().getGraph().getStatuses()) {
+                int index = flowStatus.getSteps().indexOf(status);
+                if (index >= 0) {
+                    conditions.add("(" + statusColumn + " = '" + sqlLiteral(flowStatus.getExpression()) + "' and SUBSTRING("
+                            + jsonColumn + ", " + (index + 1) + ", 1) = '0')");
+                }
             }
-            i++;
         }
-        sb.append(")");
-        return sb.toString();
+        return "(" + String.join(" or ", conditions) + ")";
+    }
+
+    private static String sqlLiteral(String value) {
+        return value.replace("'", "''");
     }
 
     private static String camelCase2LineSeparation(String camelWord) {
@@ -482,39 +1211,76 @@ public abstract class AbstractFlowHandler<T> {
         return word.toString().toUpperCase();
     }
 
+    /**
+     * 通过待办索引表按角色分页查询待办单据id，需要开启capsule.flow.pending-task.enabled
+     * 与todoSql相比不需要扫描业务表的APPROVAL_STATUS_JSON字段，按单据id升序，基于游标分页
+     *
+     * @param todoEnum     待办类型
+     * @param roles        角色集合，为空时不限制角色
+     * @param afterOrderId 上一页返回的nextCursor，查询第一页时为空
+     * @param limit        每页数量
+     * @return 待办单据id分页结果
+     */
+    public FlowPendingPageVo findPendingOrderIds(TodoEnum todoEnum, Set<String> roles, Long afterOrderId, int limit) {
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "findPendingOrderIds");
+        FlowReadContext.beginRead();
+        try {
+            if (!flowProperties.getPendingTask().isEnabled()) {
+                throw new FlowException(10030, "Pending task index is disabled, set capsule.flow.pending-task.enabled to true.");
+            }
+            if (limit <= 0) {
+                throw new FlowException(10031, "Page limit must be greater than 0.");
+            }
+            List<Long> orderIds = flowPendingTaskService.findPendingOrderIds(getFlowName(), getEntityName(), todoEnum, roles, afterOrderId, limit);
+            Long nextCursor = orderIds.size() < limit ? null : orderIds.get(orderIds.size() - 1);
+            return new FlowPendingPageVo().setOrderIds(orderIds).setNextCursor(nextCursor);
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
+        }
+    }
+
     /**
      * 获取审批流元数据信息，用于前端流程可视化展示
      * 查询出所有正向流程梳理，即taskOrder>0
      * 允许非有向无环图的场景
      * 如果是通过规则引擎判断分支的场景需要在nextStatusAlias中配置json字段
+     * flowMetaVoList只依赖流程定义，按流程定义缓存，每次返回缓存的副本，调用方可以修改
      *
      * @param bizEntity 业务实体
      * @return FlowRootVo
      */
     public FlowRootVo getFlowMetaInfoV1(T bizEntity) {
-        if (bizEntity == null) {
-            throw new FlowException(10023, "Business entity can not be empty when get flow meta info.");
-        }
-        FlowRootVo rootVo = new FlowRootVo();
-        String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
-        JSONObject approvalStatusJson = JSONObject.parseObject(ClassUtils.getStringValue(bizEntity, getApprovalStatusJsonField()));
-        approvalStatusJson.put("current_status", approvalStatus);
-        rootVo.setApprovalStatus(approvalStatusJson);
-        List<FlowMetaVo> flowMetaVoList = flowBasicService.getFlowMetaInfoV1(getFlowName());
-        rootVo.setFlowMetaVoList(flowMetaVoList);
-        List<FlowLog> historyLog = flowLogService.list(new LambdaQueryWrapper<FlowLog>().eq(FlowLog::getFlowName, getFlowName())
-                .eq(FlowLog::getEntityName, getEntityName())
-                .eq(FlowLog::getRoundId, ClassUtils.getLongValue(bizEntity, getAroundIdField()))
-                .eq(FlowLog::getOrderId, ClassUtils.getLongValue(bizEntity, getIdFiled()))
-                .orderByAsc(FlowLog::getCreateTime));
-        if (CollectionUtils.isNotEmpty(historyLog)) {
-            List<FlowTraceVo> flowTraceVos = new ArrayList<>();
-            for (FlowLog log : historyLog) {
-                flowTraceVos.add(new FlowTraceVo().setPrevStatus(log.getPrevStatus()).setNextStatus(log.getNextStatus()).setAction(log.getAction()));
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "getFlowMetaInfoV1");
+        FlowReadContext.beginRead();
+        try {
+            if (bizEntity == null) {
+                throw new FlowException(10023, "Business entity can not be empty when get flow meta info.");
             }
-            rootVo.setFlowTraceVoList(flowTraceVos);
+            FlowRootVo rootVo = new FlowRootVo();
+            String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
+            JSONObject approvalStatusJson = getStepState(bizEntity).toJson();
+            approvalStatusJson.put("current_status", approvalStatus);
+            rootVo.setApprovalStatus(approvalStatusJson);
+            List<FlowMetaVo> flowMetaVoList = getFlowDefinition(bizEntity).getFlowMetaInfoV1(flowBasicService::getFlowMetaInfoV1);
+            rootVo.setFlowMetaVoList(flowMetaVoList);
+            List<FlowLog> historyLog = listRoundFlowLogs(new LambdaQueryWrapper<FlowLog>().eq(FlowLog::getFlowName, getFlowName())
+                    .eq(FlowLog::getEntityName, getEntityName())
+                    .eq(FlowLog::getRoundId, ClassUtils.getLongValue(bizEntity, getAroundIdField()))
+                    .eq(FlowLog::getOrderId, ClassUtils.getLongValue(bizEntity, getIdFiled()))
+                    .orderByAsc(FlowLog::getCreateTime));
+            rootVo.setFlowTraceVoList(toFlowTraces(historyLog));
+            return rootVo;
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
         }
-        return rootVo;
     }
 
     /**
@@ -527,29 +1293,155 @@ public abstract class AbstractFlowHandler<T> {
      * @return FlowRootVo
      */
     public FlowRootVo getFlowMetaInfoV2(T bizEntity) {
-        if (bizEntity == null) {
-            throw new FlowException(10023, "Business entity can not be empty when get flow meta info.");
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "getFlowMetaInfoV2");
+        FlowReadContext.beginRead();
+        try {
+            if (bizEntity == null) {
+                throw new FlowException(10023, "Business entity can not be empty when get flow meta info.");
+            }
+            FlowRootVo rootVo = new FlowRootVo();
+            String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
+            JSONObject approvalStatusJson = getStepState(bizEntity).toJson();
+            approvalStatusJson.put("current_status", approvalStatus);
+            rootVo.setApprovalStatus(approvalStatusJson);
+            List<FlowMetaVo> flowMetaVoList = flowBasicService.getFlowMetaInfoV2(getFlowDefinition(bizEntity).getGraph(), bizEntity, getRuleEngine());
+            rootVo.setFlowMetaVoList(flowMetaVoList);
+            List<FlowLog> historyLog = listRoundFlowLogs(new LambdaQueryWrapper<FlowLog>().eq(FlowLog::getFlowName, getFlowName())
+                    .eq(FlowLog::getEntityName, getEntityName())
+                    .eq(FlowLog::getRoundId, ClassUtils.getLongValue(bizEntity, getAroundIdField()))
+                    .eq(FlowLog::getOrderId, ClassUtils.getLongValue(bizEntity, getIdFiled()))
+                    .orderByAsc(FlowLog::getCreateTime));
+            rootVo.setFlowTraceVoList(toFlowTraces(historyLog));
+            return rootVo;
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
         }
-        FlowRootVo rootVo = new FlowRootVo();
-        String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
-        JSONObject approvalStatusJson = JSONObject.parseObject(ClassUtils.getStringValue(bizEntity, getApprovalStatusJsonField()));
-        approvalStatusJson.put("current_status", approvalStatus);
-        rootVo.setApprovalStatus(approvalStatusJson);
-        List<FlowMetaVo> flowMetaVoList = flowBasicService.getFlowMetaInfoV2(getFlowName(), bizEntity);
-        rootVo.setFlowMetaVoList(flowMetaVoList);
-        List<FlowLog> historyLog = flowLogService.list(new LambdaQueryWrapper<FlowLog>().eq(FlowLog::getFlowName, getFlowName())
-                .eq(FlowLog::getEntityName, getEntityName())
-                .eq(FlowLog::getRoundId, ClassUtils.getLongValue(bizEntity, getAroundIdField()))
-                .eq(FlowLog::getOrderId, ClassUtils.getLongValue(bizEntity, getIdFiled()))
-                .orderByAsc(FlowLog::getCreateTime));
-        if (CollectionUtils.isNotEmpty(historyLog)) {
-            List<FlowTraceVo> flowTraceVos = new ArrayList<>();
-            for (FlowLog log : historyLog) {
-                flowTraceVos.add(new FlowTraceVo().setPrevStatus(log.getPrevStatus()).setNextStatus(log.getNextStatus()).setAction(log.getAction()));
+    }
+
+    /**
+     * 批量获取审批流元数据信息，用于列表页逐行展示流程图，结果与逐个调用getFlowMetaInfoV2(T)相同，顺序与bizEntities一致
+     * 流程定义从缓存中获取，所有单据当前回合的审批日志通过一次IN查询获取，各单据的分支规则在getMetaInfoExecutor()上并行求值
+     *
+     * @param bizEntities 业务实体列表
+     * @return List<FlowRootVo>
+     */
+    public List<FlowRootVo> getFlowMetaInfo(List<T> bizEntities) {
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "getFlowMetaInfo");
+        FlowReadContext.beginRead();
+        try {
+            if (CollectionUtils.isEmpty(bizEntities)) {
+                return new ArrayList<>();
+            }
+            Set<Long> orderIds = new HashSet<>();
+            Set<Long> roundIds = new HashSet<>();
+            for (T bizEntity : bizEntities) {
+                if (bizEntity == null) {
+                    throw new FlowException(10023, "Business entity can not be empty when get flow meta info.");
+                }
+                Long orderId = ClassUtils.getLongValue(bizEntity, getIdFiled());
+                Long roundId = ClassUtils.getLongValue(bizEntity, getAroundIdField());
+                if (orderId != null && roundId != null) {
+                    orderIds.add(orderId);
+                    roundIds.add(roundId);
+                }
+            }
+            RuleEngine ruleEngine = getRuleEngine();
+            Executor executor = getMetaInfoExecutor();
+            List<CompletableFuture<List<FlowMetaVo>>> metaFutures = new ArrayList<>(bizEntities.size());
+            for (T bizEntity : bizEntities) {
+                FlowGraph graph = getFlowDefinition(bizEntity).getGraph();
+                if (executor == null || bizEntities.size() == 1) {
+                    metaFutures.add(CompletableFuture.completedFuture(flowBasicService.getFlowMetaInfoV2(graph, bizEntity, ruleEngine)));
+                } else {
+                    metaFutures.add(CompletableFuture.supplyAsync(() -> flowBasicService.getFlowMetaInfoV2(graph, bizEntity, ruleEngine), executor));
+                }
             }
-            rootVo.setFlowTraceVoList(flowTraceVos);
+
+            // 规则求值的同时一次查询所有单据当前回合的审批日志，按(orderId, roundId)分组
+            Map<Long, Map<Long, List<FlowLog>>> historyLogs = new HashMap<>();
+            if (!orderIds.isEmpty()) {
+                groupRoundFlowLogs(historyLogs, flowLogService.list(roundFlowLogsQuery(orderIds, roundIds)));
+                if (flowProperties.getArchive().isEnabled()) {
+                    // 当前回合已整体归档的单据，再从归档表补查一次
+                    Set<Long> archivedOrderIds = new HashSet<>();
+                    Set<Long> archivedRoundIds = new HashSet<>();
+                    for (T bizEntity : bizEntities) {
+                        Long orderId = ClassUtils.getLongValue(bizEntity, getIdFiled());
+                        Long roundId = ClassUtils.getLongValue(bizEntity, getAroundIdField());
+                        if (orderId != null && roundId != null
+                                && !historyLogs.getOrDefault(orderId, Collections.emptyMap()).containsKey(roundId)) {
+                            archivedOrderIds.add(orderId);
+                            archivedRoundIds.add(roundId);
+                        }
+                    }
+                    if (!archivedOrderIds.isEmpty()) {
+                        groupRoundFlowLogs(historyLogs, flowLogService.listArchive(roundFlowLogsQuery(archivedOrderIds, archivedRoundIds)));
+                    }
+                }
+            }
+
+            List<FlowRootVo> rootVos = new ArrayList<>(bizEntities.size());
+            for (int i = 0; i < bizEntities.size(); i++) {
+                T bizEntity = bizEntities.get(i);
+                FlowRootVo rootVo = new FlowRootVo();
+                JSONObject approvalStatusJson = getStepState(bizEntity).toJson();
+                approvalStatusJson.put("current_status", ClassUtils.getStringValue(bizEntity, getApprovalStatusField()));
+                rootVo.setApprovalStatus(approvalStatusJson);
+                rootVo.setFlowMetaVoList(joinMetaFuture(metaFutures.get(i)));
+                List<FlowLog> historyLog = historyLogs.getOrDefault(ClassUtils.getLongValue(bizEntity, getIdFiled()), Collections.emptyMap())
+                        .get(ClassUtils.getLongValue(bizEntity, getAroundIdField()));
+                rootVo.setFlowTraceVoList(toFlowTraces(historyLog));
+                rootVos.add(rootVo);
+            }
+            return rootVos;
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
+        }
+    }
+
+    private static List<FlowMetaVo> joinMetaFuture(CompletableFuture<List<FlowMetaVo>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private LambdaQueryWrapper<FlowLog> roundFlowLogsQuery(Collection<Long> orderIds, Collection<Long> roundIds) {
+        return new LambdaQueryWrapper<FlowLog>().eq(FlowLog::getFlowName, getFlowName())
+                .eq(FlowLog::getEntityName, getEntityName())
+                .in(FlowLog::getOrderId, orderIds)
+                .in(FlowLog::getRoundId, roundIds)
+                .orderByAsc(FlowLog::getCreateTime);
+    }
+
+    private static void groupRoundFlowLogs(Map<Long, Map<Long, List<FlowLog>>> historyLogs, List<FlowLog> flowLogs) {
+        for (FlowLog flowLog : flowLogs) {
+            historyLogs.computeIfAbsent(flowLog.getOrderId(), k -> new HashMap<>())
+                    .computeIfAbsent(flowLog.getRoundId(), k -> new ArrayList<>()).add(flowLog);
+        }
+    }
+
+    private static List<FlowTraceVo> toFlowTraces(List<FlowLog> historyLog) {
+        if (CollectionUtils.isEmpty(historyLog)) {
+            return null;
         }
-        return rootVo;
+        List<FlowTraceVo> flowTraceVos = new ArrayList<>(historyLog.size());
+        for (FlowLog log : historyLog) {
+            flowTraceVos.add(new FlowTraceVo().setPrevStatus(log.getPrevStatus()).setNextStatus(log.getNextStatus()).setAction(log.getAction()));
+        }
+        return flowTraceVos;
     }
 
     /**
@@ -560,11 +1452,313 @@ public abstract class AbstractFlowHandler<T> {
      * @return
      */
     public List<FlowLog> getHistoryFlowLog(T bizEntity, boolean currentAround) {
-        return flowLogService.list(new LambdaQueryWrapper<FlowLog>().eq(FlowLog::getFlowName, getFlowName())
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "getHistoryFlowLog");
+        FlowReadContext.beginRead();
+        try {
+            LambdaQueryWrapper<FlowLog> query = historyFlowLogQuery(bizEntity, currentAround).orderByDesc(FlowLog::getCreateTime);
+            return currentAround ? listRoundFlowLogs(query) : listAllFlowLogs(query, false);
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
+        }
+    }
+
+    /**
+     * 分页获取当前单据的历史审批日志，按(createTime, id)基于上一页最后一条日志分页（keyset），不使用offset
+     *
+     * @param bizEntity       业务实体
+     * @param currentAround   是否限制为当前审批回合内的日志
+     * @param afterCreateTime 上一页返回的nextCreateTime，查询第一页时为空
+     * @param afterId         上一页返回的nextId，查询第一页时为空
+     * @param limit           每页数量
+     * @param ascending       true按时间升序，false按时间降序
+     * @return 审批日志分页结果
+     */
+    public FlowLogPageVo getHistoryFlowLogPage(T bizEntity, boolean currentAround, LocalDateTime afterCreateTime, Long afterId,
+                                               int limit, boolean ascending) {
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "getHistoryFlowLogPage");
+        FlowReadContext.beginRead();
+        try {
+            if (limit <= 0) {
+                throw new FlowException(10031, "Page limit must be greater than 0.");
+            }
+            LambdaQueryWrapper<FlowLog> query = historyFlowLogQuery(bizEntity, currentAround);
+            if (afterCreateTime != null && afterId != null) {
+                if (ascending) {
+                    query.and(w -> w.gt(FlowLog::getCreateTime, afterCreateTime)
+                            .or(o -> o.eq(FlowLog::getCreateTime, afterCreateTime).gt(FlowLog::getId, afterId)));
+                } else {
+                    query.and(w -> w.lt(FlowLog::getCreateTime, afterCreateTime)
+                            .or(o -> o.eq(FlowLog::getCreateTime, afterCreateTime).lt(FlowLog::getId, afterId)));
+                }
+            }
+            orderByCreateTimeAndId(query, ascending).last("LIMIT " + limit);
+            List<FlowLog> flowLogs = listAllFlowLogs(query, ascending);
+            if (flowLogs.size() > limit) {
+                flowLogs = new ArrayList<>(flowLogs.subList(0, limit));
+            }
+            FlowLogPageVo page = new FlowLogPageVo().setFlowLogs(flowLogs);
+            if (flowLogs.size() == limit) {
+                FlowLog last = flowLogs.get(flowLogs.size() - 1);
+                page.setNextCreateTime(last.getCreateTime()).setNextId(last.getId());
+            }
+            return page;
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
+        }
+    }
+
+    /**
+     * 逐行读取当前单据的历史审批日志，不在内存中累积，适用于导出等日志量较大的场景
+     *
+     * @param bizEntity     业务实体
+     * @param currentAround 是否限制为当前审批回合内的日志
+     * @param ascending     true按时间升序，false按时间降序
+     * @param consumer      逐行处理
+     */
+    public void streamHistoryFlowLog(T bizEntity, boolean currentAround, boolean ascending, Consumer<FlowLog> consumer) {
+        FlowMetrics.Recorder recorder = flowMetrics.query(getFlowName(), getEntityName(), "streamHistoryFlowLog");
+        FlowReadContext.beginRead();
+        try {
+            LambdaQueryWrapper<FlowLog> query = orderByCreateTimeAndId(historyFlowLogQuery(bizEntity, currentAround), ascending);
+            if (flowProperties.getArchive().isEnabled()) {
+                // 归档表与热表按相同顺序逐行读取并归并
+                flowLogService.streamWithArchive(query, flowLogOrder(ascending), consumer);
+            } else {
+                flowLogService.stream(query, consumer);
+            }
+        } catch (RuntimeException e) {
+            recorder.failure(e);
+            throw e;
+        } finally {
+            FlowReadContext.endRead();
+            recorder.stop();
+        }
+    }
+
+    private LambdaQueryWrapper<FlowLog> historyFlowLogQuery(T bizEntity, boolean currentAround) {
+        return new LambdaQueryWrapper<FlowLog>().eq(FlowLog::getFlowName, getFlowName())
                 .eq(FlowLog::getEntityName, getEntityName())
                 .eq(currentAround, FlowLog::getRoundId, ClassUtils.getLongValue(bizEntity, getAroundIdField()))
-                .eq(FlowLog::getOrderId, ClassUtils.getLongValue(bizEntity, getIdFiled()))
-                .orderByDesc(FlowLog::getCreateTime));
+                .eq(FlowLog::getOrderId, ClassUtils.getLongValue(bizEntity, getIdFiled()));
+    }
+
+    /**
+     * 按创建时间、ID排序，与游标条件的顺序一致
+     */
+    private static LambdaQueryWrapper<FlowLog> orderByCreateTimeAndId(LambdaQueryWrapper<FlowLog> query, boolean ascending) {
+        return ascending ? query.orderByAsc(FlowLog::getCreateTime).orderByAsc(FlowLog::getId)
+                : query.orderByDesc(FlowLog::getCreateTime).orderByDesc(FlowLog::getId);
+    }
+
+    /**
+     * 查询单个回合的审批日志，回合整体移动到归档表后从归档表读取
+     *
+     * @param query 限定了回合的查询条件
+     * @return 审批日志
+     */
+    private List<FlowLog> listRoundFlowLogs(LambdaQueryWrapper<FlowLog> query) {
+        List<FlowLog> flowLogs = flowLogService.list(query);
+        if (flowLogs.isEmpty() && flowProperties.getArchive().isEnabled()) {
+            return flowLogService.listArchive(query);
+        }
+        return flowLogs;
+    }
+
+    /**
+     * 合并热表和归档表中满足条件的审批日志，两边都有数据时按(createTime, id)重新排序
+     *
+     * @param query     查询条件
+     * @param ascending true按时间升序，false按时间降序
+     * @return 审批日志
+     */
+    private List<FlowLog> listAllFlowLogs(LambdaQueryWrapper<FlowLog> query, boolean ascending) {
+        List<FlowLog> flowLogs = flowLogService.list(query);
+        if (!flowProperties.getArchive().isEnabled()) {
+            return flowLogs;
+        }
+        List<FlowLog> archived = flowLogService.listArchive(query);
+        if (archived.isEmpty()) {
+            return flowLogs;
+        }
+        List<FlowLog> merged = new ArrayList<>(flowLogs.size() + archived.size());
+        merged.addAll(flowLogs);
+        merged.addAll(archived);
+        merged.sort(flowLogOrder(ascending));
+        return merged;
+    }
+
+    private static Comparator<FlowLog> flowLogOrder(boolean ascending) {
+        Comparator<FlowLog> comparator = Comparator.comparing(FlowLog::getCreateTime).thenComparing(FlowLog::getId);
+        return ascending ? comparator : comparator.reversed();
+    }
+
+    /**
+     * <pre>
+     * 把当前流程已结束回合的审批日志从flow_log移动到flow_log_archive，需要开启capsule.flow.archive.enabled
+     * 回合内最后一条日志的下一个状态属于getApprovedStatus()或getRejectedStatus()，且早于capsule.flow.archive.min-age时视为已结束
+     * 每批移动chunk-size个回合，一批一个事务，批次之间暂停chunk-pause，单次最多执行max-chunks-per-run批
+     * 一般由FlowLogArchiver定时调用，也可以在业务低峰期手动调用
+     * </pre>
+     *
+     * @return 移动的审批日志条数
+     */
+    public int archiveFlowLogs() {
+        FlowProperties.Archive archive = flowProperties.getArchive();
+        if (!archive.isEnabled()) {
+            return 0;
+        }
+        Set<String> terminalStatuses = new HashSet<>();
+        for (int lastTask : new int[]{1, -1}) {
+            for (FlowBasic flowBasic : getFlowDefinition().getByLastTask(lastTask)) {
+                if (StringUtils.isNotBlank(flowBasic.getNextStatus())) {
+                    terminalStatuses.add(flowBasic.getNextStatus());
+                }
+            }
+        }
+        if (terminalStatuses.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime before = LocalDateTime.now().minus(archive.getMinAge());
+        int moved = 0;
+        for (int chunk = 0; chunk < archive.getMaxChunksPerRun(); chunk++) {
+            List<Long> roundIds = flowLogService.findArchivableRoundIds(getFlowName(), getEntityName(), terminalStatuses,
+                    before, archive.getChunkSize());
+            if (roundIds.isEmpty()) {
+                break;
+            }
+            moved += flowLogService.archiveRounds(roundIds);
+            if (roundIds.size() < archive.getChunkSize()) {
+                break;
+            }
+            try {
+                Thread.sleep(archive.getChunkPause().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * 解析单据当前审批状态下各环节的处理情况，兼容JSON和位图两种格式
+     *
+     * @param bizEntity 业务实体
+     * @return StepState
+     */
+    protected StepState getStepState(T bizEntity) {
+        String approvalStatus = ClassUtils.getStringValue(bizEntity, getApprovalStatusField());
+        if (StringUtils.isBlank(approvalStatus)) {
+            throw new FlowException(10016, "You have not initial approvalStatus field.");
+        }
+        FlowStatus status = getFlowDefinition(bizEntity).getGraph().status(approvalStatus);
+        return StepState.parse(status, ClassUtils.getStringValue(bizEntity, getApprovalStatusJsonField()));
+    }
+
+    /**
+     * 获取当前流程的流程定义，优先从内存缓存中读取
+     *
+     * @return FlowDefinition
+     */
+    protected FlowDefinition getFlowDefinition() {
+        return flowDefinitionCache.get(getFlowName(), getEntityName());
+    }
+
+    /**
+     * 获取单据当前回合开始时的流程定义版本：配置了getFlowVersionField且开启capsule.flow.cache.versioned时从历史版本中获取，
+     * 否则与getFlowDefinition()相同
+     *
+     * @param bizEntity 业务实体
+     * @return FlowDefinition
+     */
+    protected FlowDefinition getFlowDefinition(T bizEntity) {
+        if (StringUtils.isBlank(getFlowVersionField())) {
+            return getFlowDefinition();
+        }
+        Long version = ClassUtils.getLongValue(bizEntity, getFlowVersionField());
+        if (version == null) {
+            return getFlowDefinition();
+        }
+        return flowDefinitionCache.get(getFlowName(), getEntityName(), version);
+    }
+
+    /**
+     * <pre>
+     * 加载当前流程的定义，同时检查运行时才会暴露的配置问题，规则表达式在加载流程定义时已按默认规则引擎预编译，
+     * getRuleEngine()与默认规则引擎不同时在此按getRuleEngine()预编译：
+     * 没有FLOW_BASIC记录、taskOrder为1的起始环节不是恰好一个、没有lastTask为1的最终环节、规则表达式无法编译、
+     * 规则表达式的nextStatusAlias为空或不是JSON数组、正向环节存在环
+     * 启动完成后由FlowHandlerWarmer调用，也可以在修改FLOW_BASIC后手动调用检查
+     * </pre>
+     *
+     * @return 发现的配置问题，为空表示通过检查
+     */
+    public List<String> warmUp() {
+        List<String> problems = new ArrayList<>();
+        FlowDefinition definition;
+        try {
+            definition = getFlowDefinition();
+        } catch (RuntimeException e) {
+            problems.add("Load flow definition failed: " + e.getMessage());
+            return problems;
+        }
+        FlowGraph graph = definition.getGraph();
+        if (graph.getFlowBasics().isEmpty()) {
+            problems.add("No flow_basic rows found.");
+            return problems;
+        }
+        if (graph.getFirstFlows().size() != 1) {
+            problems.add("Expected exactly one flow with task order 1 but found " + graph.getFirstFlows().size() + ".");
+        }
+        if (definition.getByLastTask(1).isEmpty()) {
+            problems.add("No flow with last task 1, approved status can not be resolved.");
+        }
+        if (!graph.isAcyclic()) {
+            problems.add("Forward tasks (task order >= 1) contain a cycle.");
+        }
+        for (FlowBasic flowBasic : graph.getFlowBasics()) {
+            if (!FlowGraph.isRule(flowBasic.getNextStatus())) {
+                continue;
+            }
+            String step = flowBasic.getPrevStatus() + " -[" + flowBasic.getAction() + "]-> ";
+            try {
+                if (flowProperties.getRule().isPrewarm() && getRuleEngine() != flowProperties.getRule().getEngine()) {
+                    RuleUtils.compile(getRuleEngine(), flowBasic.getNextStatus());
+                }
+                String error = RuleUtils.validate(flowBasic.getNextStatus());
+                if (error != null) {
+                    problems.add(step + "rule can not be compiled: " + error);
+                }
+            } catch (RuntimeException e) {
+                problems.add(step + "rule can not be compiled: " + e.getMessage());
+            }
+            if (StringUtils.isBlank(flowBasic.getNextStatusAlias())) {
+                problems.add(step + "rule has no next status alias.");
+                continue;
+            }
+            try {
+                JSON.parseArray(flowBasic.getNextStatusAlias());
+            } catch (RuntimeException e) {
+                problems.add(step + "next status alias is not a JSON array: " + e.getMessage());
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * 修改FLOW_BASIC中当前流程的配置后，调用此方法使缓存的流程定义失效；开启版本轮询时同时通知其他节点重新加载
+     * 必须在修改提交后生效：在修改FLOW_BASIC的Spring事务中调用时自动推迟到事务提交后执行，其他方式管理的事务需在提交后再调用
+     */
+    public void refreshFlowDefinition() {
+        flowDefinitionCache.refresh(getFlowName(), getEntityName());
     }
 
     public String getIdFiled() {
@@ -622,6 +1816,26 @@ public abstract class AbstractFlowHandler<T> {
         return "aroundId";
     }
 
+    /**
+     * 获取乐观锁版本字段名称，并发控制重新读取单据时一并刷新，默认为空表示没有版本字段
+     * 使用OPTIMISTIC策略时需要返回实体上的版本字段（如MyBatis-Plus的@Version字段），否则重试时会一直使用旧版本号
+     *
+     * @return 版本字段名称
+     */
+    public String getVersionField() {
+        return null;
+    }
+
+    /**
+     * 获取记录回合开始时流程定义版本的字段名称（Long），默认为空表示不记录，所有单据按最新版本流转
+     * 开启capsule.flow.cache.versioned时返回实体上的字段，新回合开始时写入当前版本，进行中的回合修改FLOW_BASIC后仍按原版本流转
+     *
+     * @return 流程定义版本字段名称
+     */
+    public String getFlowVersionField() {
+        return null;
+    }
+
     /**
      * 获取当前流程处理器的流程名称，不同的审批流要使用不同名称进行区分
      *
@@ -636,4 +1850,38 @@ public abstract class AbstractFlowHandler<T> {
      */
     protected abstract String getEntityName();
 
+    /**
+     * 批量处理中单个单据的中间状态
+     */
+    private static class BatchEntry<T> {
+
+        private final T bizEntity;
+
+        private final FlowBatchItemVo<T> item;
+
+        private Long roundId;
+
+        private String approvalStatus;
+
+        private FlowDefinition definition;
+
+        private List<FlowBasic> currentFlows;
+
+        private List<FlowBasic> canHandleFlows;
+
+        private BatchEntry(T bizEntity, FlowBatchItemVo<T> item) {
+            this.bizEntity = bizEntity;
+            this.item = item;
+        }
+
+        private boolean failed() {
+            return item.getErrorMessage() != null;
+        }
+
+        private void fail(RuntimeException e) {
+            item.setSuccess(false).setHandledFlows(null)
+                    .setErrorCode(e instanceof FlowException ? ((FlowException) e).getErrorCode() : null)
+                    .setErrorMessage(StringUtils.defaultString(e.getMessage(), e.getClass().getName()));
+        }
+    }
 }
@@ -16,10 +16,25 @@
 
 package wiki.capsule.flow.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 import org.springframework.stereotype.Repository;
 import wiki.capsule.flow.entity.FlowLog;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * <pre>
  * 流程审批历史日志表 Mapper 接口
@@ -31,4 +46,104 @@ import wiki.capsule.flow.entity.FlowLog;
 @Repository
 public interface FlowLogMapper extends BaseMapper<FlowLog> {
 
+    /**
+     * 自定义SQL不经过MyBatis-Plus的逻辑删除处理，需要自己加上DELETED = 0，查询条件的sqlSegment已用括号包住
+     */
+    String WHERE_NOT_DELETED = " WHERE DELETED = 0"
+            + "<if test='ew.nonEmptyOfNormal'> AND ${ew.sqlSegment}</if>"
+            + "<if test='ew.emptyOfNormal'> ${ew.sqlSegment}</if>";
+
+    /**
+     * 多行insert批量写入审批日志，不回填主键
+     *
+     * @param flowLogs 审批日志
+     * @return 写入行数
+     */
+    @Insert("<script>"
+            + "INSERT INTO flow_log (FLOW_NAME, ENTITY_NAME, PREV_STATUS, COMMENTS, ACTION, NEXT_STATUS, ORDER_ID, ROUND_ID, CREATED_BY, CREATE_TIME) VALUES "
+            + "<foreach collection='flowLogs' item='log' separator=','>"
+            + "(#{log.flowName}, #{log.entityName}, #{log.prevStatus}, #{log.comments}, #{log.action}, #{log.nextStatus}, "
+            + "#{log.orderId}, #{log.roundId}, #{log.createdBy}, #{log.createTime})"
+            + "</foreach>"
+            + "</script>")
+    int insertBatch(@Param("flowLogs") List<FlowLog> flowLogs);
+
+    /**
+     * 按条件逐行读取未删除的审批日志，结果不在内存中累积；MySQL需要在连接串中开启useCursorFetch=true，fetchSize才会生效
+     *
+     * @param wrapper 查询条件
+     * @param handler 逐行处理
+     */
+    @Select("<script>SELECT * FROM flow_log" + WHERE_NOT_DELETED + "</script>")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @ResultType(FlowLog.class)
+    void selectStream(@Param(Constants.WRAPPER) Wrapper<FlowLog> wrapper, ResultHandler<FlowLog> handler);
+
+    /**
+     * 查找可以归档的回合：回合内最后一条日志的NEXT_STATUS为最终状态，且创建时间早于before
+     *
+     * @param flowName         流程名称
+     * @param entityName       实体名称
+     * @param terminalStatuses 最终通过及最终驳回的状态
+     * @param before           最后一条日志的创建时间上限
+     * @param limit            最多返回的回合数
+     * @return 回合id
+     */
+    @Select("<script>"
+            + "SELECT DISTINCT l.ROUND_ID FROM flow_log l WHERE l.FLOW_NAME = #{flowName} AND l.ENTITY_NAME = #{entityName} "
+            + "AND l.CREATE_TIME &lt; #{before} AND l.NEXT_STATUS IN "
+            + "<foreach collection='terminalStatuses' item='status' open='(' separator=',' close=')'>#{status}</foreach> "
+            + "AND NOT EXISTS (SELECT 1 FROM flow_log n WHERE n.ROUND_ID = l.ROUND_ID "
+            + "AND (n.CREATE_TIME &gt; l.CREATE_TIME OR (n.CREATE_TIME = l.CREATE_TIME AND n.ID &gt; l.ID))) "
+            + "LIMIT #{limit}"
+            + "</script>")
+    List<Long> selectArchivableRoundIds(@Param("flowName") String flowName, @Param("entityName") String entityName,
+                                        @Param("terminalStatuses") Collection<String> terminalStatuses,
+                                        @Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    /**
+     * 把指定回合的审批日志复制到flow_log_archive，保留原ID
+     *
+     * @param roundIds 回合id
+     * @return 复制行数
+     */
+    @Insert("<script>"
+            + "INSERT INTO flow_log_archive (ID, FLOW_NAME, ENTITY_NAME, PREV_STATUS, COMMENTS, ACTION, NEXT_STATUS, ORDER_ID, ROUND_ID, "
+            + "DELETED, CREATED_BY, CREATE_TIME, UPDATED_BY, UPDATE_TIME) "
+            + "SELECT ID, FLOW_NAME, ENTITY_NAME, PREV_STATUS, COMMENTS, ACTION, NEXT_STATUS, ORDER_ID, ROUND_ID, "
+            + "DELETED, CREATED_BY, CREATE_TIME, UPDATED_BY, UPDATE_TIME FROM flow_log WHERE ROUND_ID IN "
+            + "<foreach collection='roundIds' item='roundId' open='(' separator=',' close=')'>#{roundId}</foreach>"
+            + "</script>")
+    int copyToArchive(@Param("roundIds") Collection<Long> roundIds);
+
+    /**
+     * 删除指定回合的审批日志
+     *
+     * @param roundIds 回合id
+     * @return 删除行数
+     */
+    @Delete("<script>"
+            + "DELETE FROM flow_log WHERE ROUND_ID IN "
+            + "<foreach collection='roundIds' item='roundId' open='(' separator=',' close=')'>#{roundId}</foreach>"
+            + "</script>")
+    int deleteByRoundIds(@Param("roundIds") Collection<Long> roundIds);
+
+    /**
+     * 按条件查询flow_log_archive中未删除的审批日志
+     *
+     * @param wrapper 查询条件
+     * @return 审批日志
+     */
+    @Select("<script>SELECT * FROM flow_log_archive" + WHERE_NOT_DELETED + "</script>")
+    List<FlowLog> selectArchiveList(@Param(Constants.WRAPPER) Wrapper<FlowLog> wrapper);
+
+    /**
+     * 按条件逐行读取flow_log_archive中未删除的审批日志，选项与selectStream相同；Cursor需要在事务中读取，用完后关闭
+     *
+     * @param wrapper 查询条件
+     * @return 审批日志游标
+     */
+    @Select("<script>SELECT * FROM flow_log_archive" + WHERE_NOT_DELETED + "</script>")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    Cursor<FlowLog> selectArchiveStream(@Param(Constants.WRAPPER) Wrapper<FlowLog> wrapper);
 }
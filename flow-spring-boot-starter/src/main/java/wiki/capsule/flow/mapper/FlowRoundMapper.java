@@ -17,6 +17,7 @@
 package wiki.capsule.flow.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.springframework.stereotype.Repository;
 import wiki.capsule.flow.entity.FlowRound;
 
@@ -31,4 +32,13 @@ import wiki.capsule.flow.entity.FlowRound;
 @Repository
 public interface FlowRoundMapper extends BaseMapper<FlowRound> {
 
+    /**
+     * 使用预先生成的ID写入回合，ID由RoundIdGenerator生成，不依赖数据库自增
+     *
+     * @param flowRound 回合
+     * @return 写入行数
+     */
+    @Insert("INSERT INTO flow_round (ID, CHANGE_RECORD, CREATED_BY, CREATE_TIME) "
+            + "VALUES (#{id}, #{changeRecord}, #{createdBy}, #{createTime})")
+    int insertWithId(FlowRound flowRound);
 }
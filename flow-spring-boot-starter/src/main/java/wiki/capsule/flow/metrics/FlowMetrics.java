@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.metrics;
+
+/**
+ * <pre>
+ * 流程处理和查询的度量埋点，未引入Micrometer或容器中没有MeterRegistry时使用NOOP实现，不产生额外开销
+ * 每次调用process()或查询方法时创建一个Recorder，按阶段记录耗时，异常时记录错误码
+ * 并发控制的锁竞争、版本冲突重试等事件通过concurrency()单独计数
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public interface FlowMetrics {
+
+    String PHASE_VERIFY = "verify";
+
+    String PHASE_LOCK = "lock";
+
+    String PHASE_ROUND = "round";
+
+    String PHASE_FIND_CURRENT_FLOWS = "findCurrentFlows";
+
+    String PHASE_AUTH_PERMISSION = "authPermission";
+
+    String PHASE_START_PROCESS = "startProcess";
+
+    String PHASE_SAVE_FLOW_LOGS = "saveFlowLogs";
+
+    String PHASE_PENDING_TASKS = "pendingTasks";
+
+    String PHASE_AFTER_PROCESS = "afterProcess";
+
+    String PHASE_FLUSH = "flush";
+
+    String EVENT_LOCK_CONTENDED = "lockContended";
+
+    String EVENT_LOCK_TIMEOUT = "lockTimeout";
+
+    String EVENT_CONFLICT_RETRY = "conflictRetry";
+
+    String EVENT_CONFLICT_EXHAUSTED = "conflictExhausted";
+
+    FlowMetrics NOOP = new FlowMetrics() {
+        @Override
+        public Recorder process(String flowName, String entityName, String action) {
+            return Recorder.NOOP;
+        }
+
+        @Override
+        public Recorder processBatch(String flowName, String entityName, String action) {
+            return Recorder.NOOP;
+        }
+
+        @Override
+        public Recorder query(String flowName, String entityName, String query) {
+            return Recorder.NOOP;
+        }
+    };
+
+    /**
+     * 开始记录一次process()调用
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @param action     审批动作
+     * @return Recorder
+     */
+    Recorder process(String flowName, String entityName, String action);
+
+    /**
+     * 开始记录一次processBatch()调用
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @param action     审批动作
+     * @return Recorder
+     */
+    Recorder processBatch(String flowName, String entityName, String action);
+
+    /**
+     * 开始记录一次查询，如待办状态、流程元数据、审批日志等
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @param query      查询名称
+     * @return Recorder
+     */
+    Recorder query(String flowName, String entityName, String query);
+
+    /**
+     * 记录一次并发控制事件，如锁竞争、获取锁超时、版本冲突重试
+     *
+     * @param flowName   流程名称
+     * @param entityName 实体名称
+     * @param event      事件名称
+     */
+    default void concurrency(String flowName, String entityName, String event) {
+    }
+
+    /**
+     * 单次调用的记录器，非线程安全，只在当前调用内使用
+     */
+    interface Recorder {
+
+        Recorder NOOP = new Recorder() {
+            @Override
+            public void phase(String phase) {
+            }
+
+            @Override
+            public void failure(Throwable e) {
+            }
+
+            @Override
+            public void stop() {
+            }
+        };
+
+        /**
+         * 结束上一个阶段并开始下一个阶段
+         *
+         * @param phase 阶段名称
+         */
+        void phase(String phase);
+
+        /**
+         * 标记本次调用失败，FlowException按错误码记录
+         *
+         * @param e 异常
+         */
+        void failure(Throwable e);
+
+        /**
+         * 结束当前阶段和本次调用，需要在finally中调用
+         */
+        void stop();
+    }
+}
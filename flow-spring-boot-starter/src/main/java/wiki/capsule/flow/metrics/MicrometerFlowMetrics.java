@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import wiki.capsule.flow.exception.FlowException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 基于Micrometer的度量实现，注册以下指标：
+ * capsule.flow.process              process()总耗时，tag：flow、entity、action、outcome
+ * capsule.flow.process.phase        process()各阶段耗时，tag：flow、entity、action、phase、outcome
+ * capsule.flow.process.errors       process()失败次数，tag：flow、entity、action、phase、code
+ * capsule.flow.batch                processBatch()总耗时，capsule.flow.batch.phase和capsule.flow.batch.errors同上
+ * capsule.flow.query                查询耗时，tag：flow、entity、query、outcome
+ * capsule.flow.query.errors         查询失败次数，tag：flow、entity、query、code
+ * capsule.flow.concurrency          并发控制事件次数，tag：flow、entity、event
+ * outcome成功时为success，失败时为FlowException的错误码，其他异常为异常类名
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class MicrometerFlowMetrics implements FlowMetrics {
+
+    public static final String PROCESS = "capsule.flow.process";
+
+    public static final String PROCESS_PHASE = "capsule.flow.process.phase";
+
+    public static final String PROCESS_ERRORS = "capsule.flow.process.errors";
+
+    public static final String BATCH = "capsule.flow.batch";
+
+    public static final String BATCH_PHASE = "capsule.flow.batch.phase";
+
+    public static final String BATCH_ERRORS = "capsule.flow.batch.errors";
+
+    public static final String QUERY = "capsule.flow.query";
+
+    public static final String QUERY_ERRORS = "capsule.flow.query.errors";
+
+    public static final String CONCURRENCY = "capsule.flow.concurrency";
+
+    private static final String OUTCOME_SUCCESS = "success";
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry registry;
+
+    public MicrometerFlowMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Recorder process(String flowName, String entityName, String action) {
+        return new MicrometerRecorder(PROCESS, PROCESS_PHASE, PROCESS_ERRORS, baseTags(flowName, entityName).and("action", tagValue(action)));
+    }
+
+    @Override
+    public Recorder processBatch(String flowName, String entityName, String action) {
+        return new MicrometerRecorder(BATCH, BATCH_PHASE, BATCH_ERRORS, baseTags(flowName, entityName).and("action", tagValue(action)));
+    }
+
+    @Override
+    public Recorder query(String flowName, String entityName, String query) {
+        return new MicrometerRecorder(QUERY, null, QUERY_ERRORS, baseTags(flowName, entityName).and("query", tagValue(query)));
+    }
+
+    @Override
+    public void concurrency(String flowName, String entityName, String event) {
+        registry.counter(CONCURRENCY, baseTags(flowName, entityName).and("event", tagValue(event))).increment();
+    }
+
+    private static Tags baseTags(String flowName, String entityName) {
+        return Tags.of("flow", tagValue(flowName), "entity", tagValue(entityName));
+    }
+
+    private static String tagValue(String value) {
+        return StringUtils.isBlank(value) ? NONE : value;
+    }
+
+    private static String outcome(Throwable e) {
+        if (e instanceof FlowException && ((FlowException) e).getErrorCode() != null) {
+            return String.valueOf(((FlowException) e).getErrorCode());
+        }
+        return e.getClass().getSimpleName();
+    }
+
+    private final class MicrometerRecorder implements Recorder {
+
+        private final String timerName;
+
+        private final String phaseTimerName;
+
+        private final String errorCounterName;
+
+        private final Tags tags;
+
+        private final long startTime;
+
+        private long phaseStartTime;
+
+        private String phase;
+
+        private String outcome = OUTCOME_SUCCESS;
+
+        private MicrometerRecorder(String timerName, String phaseTimerName, String errorCounterName, Tags tags) {
+            this.timerName = timerName;
+            this.phaseTimerName = phaseTimerName;
+            this.errorCounterName = errorCounterName;
+            this.tags = tags;
+            this.startTime = System.nanoTime();
+            this.phaseStartTime = startTime;
+        }
+
+        @Override
+        public void phase(String phase) {
+            long now = System.nanoTime();
+            recordPhase(now);
+            this.phase = phase;
+            this.phaseStartTime = now;
+        }
+
+        @Override
+        public void failure(Throwable e) {
+            outcome = outcome(e);
+            Tags errorTags = phaseTimerName != null ? tags.and("phase", tagValue(phase)) : tags;
+            registry.counter(errorCounterName, errorTags.and("code", outcome)).increment();
+        }
+
+        @Override
+        public void stop() {
+            long now = System.nanoTime();
+            recordPhase(now);
+            phase = null;
+            Timer.builder(timerName).tags(tags).tag("outcome", outcome).register(registry)
+                    .record(now - startTime, TimeUnit.NANOSECONDS);
+        }
+
+        private void recordPhase(long now) {
+            if (phaseTimerName == null || phase == null) {
+                return;
+            }
+            Timer.builder(phaseTimerName).tags(tags).tag("phase", phase).tag("outcome", outcome).register(registry)
+                    .record(now - phaseStartTime, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.rule;
+
+/**
+ * 编译后的规则表达式，线程安全，可以缓存复用
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@FunctionalInterface
+public interface CompiledRule {
+
+    /**
+     * 对业务实体求值
+     *
+     * @param key   表达式中引用实体的变量名，如vo
+     * @param value 业务实体
+     * @return 表达式结果（下一个状态），没有输出时为空字符串
+     */
+    String evaluate(String key, Object value);
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.rule;
+
+import lombok.extern.slf4j.Slf4j;
+import wiki.capsule.flow.utils.RuleTemplateCache;
+import wiki.capsule.flow.utils.RuleUtils;
+
+/**
+ * <pre>
+ * 把&lt;% %&gt;规则表达式编译为CompiledRule，求值时直接按cached FieldAccessor读取实体字段并返回状态，不经过Beetl模板输出
+ * 支持的语法见RuleParser，运算符直接使用Beetl的实现；超出支持范围的表达式在编译时打印一次告警，之后委托给Beetl渲染
+ * 求值出错（如条件为null、与null比较大小、除以0）时该次求值交给Beetl重新渲染，错误的处理和输出与BEETL引擎相同
+ * 编译结果按表达式文本缓存，容量与capsule.flow.rule.cache-size一致
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+public final class RuleCompiler {
+
+    private static final int DEFAULT_CACHE_SIZE = 512;
+
+    private static final RuleTemplateCache<CompiledRule> RULE_CACHE = new RuleTemplateCache<>(DEFAULT_CACHE_SIZE);
+
+    private RuleCompiler() {
+    }
+
+    /**
+     * 编译表达式并放入缓存，可用于启动时预热
+     *
+     * @param el 规则表达式
+     * @return CompiledRule
+     */
+    public static CompiledRule compile(String el) {
+        CompiledRule rule = RULE_CACHE.get(el);
+        if (rule == null) {
+            try {
+                rule = fallbackOnError(el, RuleParser.parse(el));
+            } catch (RuleParser.UnsupportedRuleException e) {
+                log.warn("Rule {} can not be compiled ({}), it will be rendered by Beetl.", el, e.getMessage());
+                RuleUtils.compile(el);
+                rule = (key, value) -> RuleUtils.render(el, key, value);
+            }
+            RULE_CACHE.put(el, rule);
+        }
+        return rule;
+    }
+
+    private static CompiledRule fallbackOnError(String el, CompiledRule compiled) {
+        return (key, value) -> {
+            try {
+                return compiled.evaluate(key, value);
+            } catch (RuntimeException e) {
+                log.debug("Rule {} failed to evaluate ({}), it is rendered by Beetl.", el, e.toString());
+                return RuleUtils.render(el, key, value);
+            }
+        };
+    }
+
+    /**
+     * 判断表达式是否可以完全编译，不会回退到Beetl
+     *
+     * @param el 规则表达式
+     * @return true表示可以编译
+     */
+    public static boolean isCompilable(String el) {
+        try {
+            RuleParser.parse(el);
+            return true;
+        } catch (RuleParser.UnsupportedRuleException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取编译结果缓存，可用于查看命中、未命中次数或调整容量
+     *
+     * @return RuleTemplateCache
+     */
+    public static RuleTemplateCache<CompiledRule> getRuleCache() {
+        return RULE_CACHE;
+    }
+}
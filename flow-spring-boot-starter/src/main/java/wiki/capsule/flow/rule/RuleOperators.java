@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.rule;
+
+import org.beetl.core.misc.ALU;
+import wiki.capsule.flow.exception.FlowException;
+
+/**
+ * <pre>
+ * 规则表达式的运算符实现，算术、比较和相等判断直接调用Beetl表达式求值使用的ALU，与BEETL引擎的结果一致
+ * （如整数相除结果为小数、int运算溢出、BigDecimal与Double混合运算等）
+ * 条件只接受Boolean，与Beetl的if、&amp;&amp;、||、!、?:一致；求值出错时抛出异常，由RuleCompiler交给Beetl重新渲染
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+final class RuleOperators {
+
+    private RuleOperators() {
+    }
+
+    static boolean test(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        throw new FlowException(10038, "Rule condition must be a boolean, but was " + value + ".");
+    }
+
+    static String print(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    static boolean equals(Object left, Object right) {
+        return ALU.equals(left, right);
+    }
+
+    static boolean notEquals(Object left, Object right) {
+        return ALU.notEquals(left, right);
+    }
+
+    static boolean less(Object left, Object right) {
+        return ALU.less(left, right, null, null);
+    }
+
+    static boolean lessEquals(Object left, Object right) {
+        return ALU.lessEquals(left, right, null, null);
+    }
+
+    static boolean greater(Object left, Object right) {
+        return ALU.greater(left, right, null, null);
+    }
+
+    static boolean greaterEquals(Object left, Object right) {
+        return ALU.greaterEquals(left, right, null, null);
+    }
+
+    static Object add(Object left, Object right) {
+        return ALU.plus(left, right, null, null);
+    }
+
+    static Object subtract(Object left, Object right) {
+        return ALU.minus(left, right, null, null);
+    }
+
+    static Object multiply(Object left, Object right) {
+        return ALU.mult(left, right, null, null);
+    }
+
+    static Object divide(Object left, Object right) {
+        return ALU.div(left, right, null, null);
+    }
+
+    static Object remainder(Object left, Object right) {
+        return ALU.mod(left, right, null, null);
+    }
+
+    static Object negate(Object value) {
+        return ALU.negative(value, null);
+    }
+}
@@ -0,0 +1,514 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.rule;
+
+import wiki.capsule.flow.exception.FlowException;
+import wiki.capsule.flow.utils.FieldAccessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 规则表达式解析器，把&lt;% %&gt;中的内容解析为由lambda组成的求值树，只支持Beetl语法的以下子集：
+ * if (条件) { print("A"); } else if (条件) { print("B"); } else { print("C"); }，print中可以使用三元表达式 条件 ? "A" : "B"
+ * 表达式支持 == != &lt; &lt;= &gt; &gt;= &amp;&amp; || ! + - * / % ?: 和括号，取值只能是字面量（数字、字符串、true、false、null）或 vo.field.field，
+ * 字面量的类型与Beetl一致：整数为Integer或Long，小数为Double
+ * 不支持的语法（变量声明、赋值、函数和方法调用、表达式语句等）抛出UnsupportedRuleException，由RuleCompiler回退到Beetl
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+final class RuleParser {
+
+    /**
+     * 对业务实体求值的表达式节点
+     */
+    interface Expr {
+        Object eval(Object root);
+    }
+
+    /**
+     * 语句节点，返回print的输出，没有输出时返回null
+     */
+    interface Stmt {
+        String exec(Object root);
+    }
+
+    static final class UnsupportedRuleException extends RuntimeException {
+        UnsupportedRuleException(String message) {
+            super(message);
+        }
+    }
+
+    private enum TokenType {
+        IDENT, NUMBER, STRING, SYMBOL, EOF
+    }
+
+    private static final class Token {
+        final TokenType type;
+        final String text;
+        final Object value;
+
+        Token(TokenType type, String text, Object value) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+        }
+    }
+
+    private static final String[] SYMBOLS = {"==", "!=", "<=", ">=", "&&", "||",
+            "(", ")", "{", "}", ";", ".", "?", ":", "!", "<", ">", "+", "-", "*", "/", "%"};
+
+    private final List<Token> tokens;
+
+    private int position;
+
+    private String rootName;
+
+    private RuleParser(String source) {
+        this.tokens = tokenize(source);
+    }
+
+    /**
+     * 解析规则表达式
+     *
+     * @param el &lt;% %&gt;规则表达式
+     * @return 编译后的规则
+     */
+    static CompiledRule parse(String el) {
+        String source = el.trim();
+        if (source.startsWith("<%") && source.endsWith("%>") && source.length() >= 4) {
+            source = source.substring(2, source.length() - 2);
+        }
+        RuleParser parser = new RuleParser(source);
+        List<Stmt> statements = new ArrayList<>();
+        while (parser.peek().type != TokenType.EOF) {
+            statements.add(parser.statement());
+        }
+        if (statements.isEmpty()) {
+            throw new UnsupportedRuleException("Empty rule.");
+        }
+        return parser.rule(sequence(statements));
+    }
+
+    private CompiledRule rule(Stmt body) {
+        String name = rootName;
+        return (key, value) -> {
+            if (name != null && !name.equals(key)) {
+                throw new FlowException(10038, "Rule variable " + name + " is not bound, bound variable is " + key + ".");
+            }
+            String output = body.exec(value);
+            return output == null ? "" : output;
+        };
+    }
+
+    // ---------------------------------------------------------------- 语句
+
+    private Stmt statement() {
+        Token token = next();
+        if (token.type == TokenType.SYMBOL && ";".equals(token.text)) {
+            return root -> null;
+        }
+        if (token.type == TokenType.IDENT && "if".equals(token.text)) {
+            expect(TokenType.SYMBOL, "(");
+            Expr condition = expression();
+            expect(TokenType.SYMBOL, ")");
+            Stmt then = body();
+            Stmt otherwise = null;
+            if (peek().type == TokenType.IDENT && "else".equals(peek().text)) {
+                next();
+                otherwise = body();
+            }
+            Stmt elseBranch = otherwise;
+            return root -> {
+                if (RuleOperators.test(condition.eval(root))) {
+                    return then.exec(root);
+                }
+                return elseBranch == null ? null : elseBranch.exec(root);
+            };
+        }
+        if (token.type == TokenType.IDENT && "print".equals(token.text)) {
+            expect(TokenType.SYMBOL, "(");
+            Expr value = expression();
+            expect(TokenType.SYMBOL, ")");
+            expect(TokenType.SYMBOL, ";");
+            return root -> RuleOperators.print(value.eval(root));
+        }
+        throw new UnsupportedRuleException("Unsupported statement " + token.text + ".");
+    }
+
+    private Stmt body() {
+        if (!accept("{")) {
+            return statement();
+        }
+        List<Stmt> statements = new ArrayList<>();
+        while (!accept("}")) {
+            if (peek().type == TokenType.EOF) {
+                throw new UnsupportedRuleException("Missing }.");
+            }
+            statements.add(statement());
+        }
+        return sequence(statements);
+    }
+
+    private static Stmt sequence(List<Stmt> statements) {
+        if (statements.size() == 1) {
+            return statements.get(0);
+        }
+        Stmt[] array = statements.toArray(new Stmt[0]);
+        return root -> {
+            String output = null;
+            for (Stmt statement : array) {
+                String part = statement.exec(root);
+                if (part != null) {
+                    output = output == null ? part : output + part;
+                }
+            }
+            return output;
+        };
+    }
+
+    // ---------------------------------------------------------------- 表达式
+
+    private Expr expression() {
+        Expr condition = or();
+        if (!accept("?")) {
+            return condition;
+        }
+        Expr whenTrue = expression();
+        expect(TokenType.SYMBOL, ":");
+        Expr whenFalse = expression();
+        return root -> RuleOperators.test(condition.eval(root)) ? whenTrue.eval(root) : whenFalse.eval(root);
+    }
+
+    private Expr or() {
+        Expr left = and();
+        while (accept("||")) {
+            Expr l = left;
+            Expr r = and();
+            left = root -> RuleOperators.test(l.eval(root)) || RuleOperators.test(r.eval(root));
+        }
+        return left;
+    }
+
+    private Expr and() {
+        Expr left = equality();
+        while (accept("&&")) {
+            Expr l = left;
+            Expr r = equality();
+            left = root -> RuleOperators.test(l.eval(root)) && RuleOperators.test(r.eval(root));
+        }
+        return left;
+    }
+
+    private Expr equality() {
+        Expr left = relational();
+        while (true) {
+            Expr l = left;
+            if (accept("==")) {
+                Expr r = relational();
+                left = root -> RuleOperators.equals(l.eval(root), r.eval(root));
+            } else if (accept("!=")) {
+                Expr r = relational();
+                left = root -> RuleOperators.notEquals(l.eval(root), r.eval(root));
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr relational() {
+        Expr left = additive();
+        Expr l = left;
+        if (accept("<")) {
+            Expr r = additive();
+            return root -> RuleOperators.less(l.eval(root), r.eval(root));
+        } else if (accept("<=")) {
+            Expr r = additive();
+            return root -> RuleOperators.lessEquals(l.eval(root), r.eval(root));
+        } else if (accept(">")) {
+            Expr r = additive();
+            return root -> RuleOperators.greater(l.eval(root), r.eval(root));
+        } else if (accept(">=")) {
+            Expr r = additive();
+            return root -> RuleOperators.greaterEquals(l.eval(root), r.eval(root));
+        }
+        return left;
+    }
+
+    private Expr additive() {
+        Expr left = multiplicative();
+        while (true) {
+            Expr l = left;
+            if (accept("+")) {
+                Expr r = multiplicative();
+                left = root -> RuleOperators.add(l.eval(root), r.eval(root));
+            } else if (accept("-")) {
+                Expr r = multiplicative();
+                left = root -> RuleOperators.subtract(l.eval(root), r.eval(root));
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr multiplicative() {
+        Expr left = unary();
+        while (true) {
+            Expr l = left;
+            if (accept("*")) {
+                Expr r = unary();
+                left = root -> RuleOperators.multiply(l.eval(root), r.eval(root));
+            } else if (accept("/")) {
+                Expr r = unary();
+                left = root -> RuleOperators.divide(l.eval(root), r.eval(root));
+            } else if (accept("%")) {
+                Expr r = unary();
+                left = root -> RuleOperators.remainder(l.eval(root), r.eval(root));
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr unary() {
+        if (accept("!")) {
+            Expr operand = unary();
+            return root -> !RuleOperators.test(operand.eval(root));
+        }
+        if (accept("-")) {
+            Expr operand = unary();
+            return root -> RuleOperators.negate(operand.eval(root));
+        }
+        return primary();
+    }
+
+    private Expr primary() {
+        Token token = next();
+        switch (token.type) {
+            case NUMBER:
+            case STRING:
+                Object constant = token.value;
+                return root -> constant;
+            case IDENT:
+                if ("true".equals(token.text) || "false".equals(token.text)) {
+                    Boolean bool = Boolean.valueOf(token.text);
+                    return root -> bool;
+                }
+                if ("null".equals(token.text)) {
+                    return root -> null;
+                }
+                return path(token.text);
+            case SYMBOL:
+                if ("(".equals(token.text)) {
+                    Expr inner = expression();
+                    expect(TokenType.SYMBOL, ")");
+                    return inner;
+                }
+                break;
+            default:
+                break;
+        }
+        throw new UnsupportedRuleException("Unexpected token " + token.text + ".");
+    }
+
+    private Expr path(String name) {
+        if (rootName == null) {
+            rootName = name;
+        } else if (!rootName.equals(name)) {
+            throw new UnsupportedRuleException("Unsupported variable " + name + ".");
+        }
+        if ("(".equals(peek().text)) {
+            throw new UnsupportedRuleException("Unsupported function " + name + ".");
+        }
+        Expr current = root -> root;
+        while (accept(".")) {
+            Token property = expect(TokenType.IDENT, null);
+            if ("(".equals(peek().text)) {
+                throw new UnsupportedRuleException("Unsupported method " + property.text + ".");
+            }
+            current = new Property(current, property.text);
+        }
+        return current;
+    }
+
+    /**
+     * 属性访问节点，按上一次访问的实体类型缓存FieldAccessor（单态内联缓存），实体为Map时按key取值，为空时返回null
+     */
+    private static final class Property implements Expr {
+
+        private final Expr target;
+
+        private final String name;
+
+        private volatile Site site;
+
+        Property(Expr target, String name) {
+            this.target = target;
+            this.name = name;
+        }
+
+        @Override
+        public Object eval(Object root) {
+            Object value = target.eval(root);
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof Map) {
+                return ((Map<?, ?>) value).get(name);
+            }
+            Site current = site;
+            if (current == null || current.type != value.getClass()) {
+                current = new Site(value.getClass(), FieldAccessor.of(value.getClass(), name));
+                site = current;
+            }
+            return current.accessor.get(value);
+        }
+    }
+
+    private static final class Site {
+
+        final Class<?> type;
+
+        final FieldAccessor accessor;
+
+        Site(Class<?> type, FieldAccessor accessor) {
+            this.type = type;
+            this.accessor = accessor;
+        }
+    }
+
+    // ---------------------------------------------------------------- 词法
+
+    private Token peek() {
+        return tokens.get(position);
+    }
+
+    private Token next() {
+        Token token = tokens.get(position);
+        if (token.type != TokenType.EOF) {
+            position++;
+        }
+        return token;
+    }
+
+    private boolean accept(String symbol) {
+        Token token = peek();
+        if (token.type == TokenType.SYMBOL && token.text.equals(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token expect(TokenType type, String text) {
+        Token token = next();
+        if (token.type != type || (text != null && !text.equals(token.text))) {
+            throw new UnsupportedRuleException("Expected " + (text == null ? type : text) + " but found " + token.text + ".");
+        }
+        return token;
+    }
+
+    private static List<Token> tokenize(String source) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int length = source.length();
+        while (i < length) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(source.charAt(i))) {
+                    i++;
+                }
+                String text = source.substring(start, i);
+                tokens.add(new Token(TokenType.IDENT, text, null));
+            } else if (Character.isDigit(c)) {
+                int start = i;
+                while (i < length && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                    i++;
+                }
+                String text = source.substring(start, i);
+                tokens.add(new Token(TokenType.NUMBER, text, number(text)));
+            } else if (c == '"' || c == '\'') {
+                StringBuilder value = new StringBuilder();
+                int start = i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new UnsupportedRuleException("Unterminated string.");
+                    }
+                    char ch = source.charAt(i++);
+                    if (ch == c) {
+                        break;
+                    }
+                    if (ch == '\\' && i < length) {
+                        ch = unescape(source.charAt(i++));
+                    }
+                    value.append(ch);
+                }
+                tokens.add(new Token(TokenType.STRING, source.substring(start, i), value.toString()));
+            } else {
+                String symbol = null;
+                for (String candidate : SYMBOLS) {
+                    if (source.startsWith(candidate, i)) {
+                        symbol = candidate;
+                        break;
+                    }
+                }
+                if (symbol == null) {
+                    throw new UnsupportedRuleException("Unsupported character " + c + ".");
+                }
+                tokens.add(new Token(TokenType.SYMBOL, symbol, null));
+                i += symbol.length();
+            }
+        }
+        tokens.add(new Token(TokenType.EOF, "<EOF>", null));
+        return tokens;
+    }
+
+    private static Object number(String text) {
+        try {
+            if (text.indexOf('.') < 0) {
+                long value = Long.parseLong(text);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            }
+            return Double.valueOf(text);
+        } catch (NumberFormatException e) {
+            throw new UnsupportedRuleException("Unsupported number " + text + ".");
+        }
+    }
+
+    private static char unescape(char c) {
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            default:
+                return c;
+        }
+    }
+}
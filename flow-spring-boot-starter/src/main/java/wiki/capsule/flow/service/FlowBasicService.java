@@ -18,6 +18,8 @@ package wiki.capsule.flow.service;
 
 import com.baomidou.mybatisplus.extension.service.IService;
 import wiki.capsule.flow.entity.FlowBasic;
+import wiki.capsule.flow.enums.RuleEngine;
+import wiki.capsule.flow.graph.FlowGraph;
 import wiki.capsule.flow.vo.FlowMetaVo;
 
 import java.util.List;
@@ -55,4 +57,31 @@ public interface FlowBasicService extends IService<FlowBasic> {
      * @return List<FlowMetaVo>
      */
     List<FlowMetaVo> getFlowMetaInfoV2(String flowName, Object bizEntity);
+
+    /**
+     * 通过已编译的流程图获取审批流元数据信息，不再查询数据库，规则同getFlowMetaInfoV1(String)
+     *
+     * @param graph 流程图
+     * @return List<FlowMetaVo>
+     */
+    List<FlowMetaVo> getFlowMetaInfoV1(FlowGraph graph);
+
+    /**
+     * 通过已编译的流程图获取审批流元数据信息，不再查询数据库，规则同getFlowMetaInfoV2(String, Object)
+     *
+     * @param graph     流程图
+     * @param bizEntity 业务实体
+     * @return List<FlowMetaVo>
+     */
+    List<FlowMetaVo> getFlowMetaInfoV2(FlowGraph graph, Object bizEntity);
+
+    /**
+     * 通过已编译的流程图获取审批流元数据信息，分支规则使用指定的规则引擎求值，其余同getFlowMetaInfoV2(FlowGraph, Object)
+     *
+     * @param graph      流程图
+     * @param bizEntity  业务实体
+     * @param ruleEngine 规则引擎
+     * @return List<FlowMetaVo>
+     */
+    List<FlowMetaVo> getFlowMetaInfoV2(FlowGraph graph, Object bizEntity, RuleEngine ruleEngine);
 }
@@ -16,9 +16,16 @@
 
 package wiki.capsule.flow.service;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.extension.service.IService;
 import wiki.capsule.flow.entity.FlowLog;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * <pre>
  * 流程审批历史日志表 服务类
@@ -29,4 +36,49 @@ import wiki.capsule.flow.entity.FlowLog;
  */
 public interface FlowLogService extends IService<FlowLog> {
 
+    /**
+     * 按条件逐行读取审批日志，适用于导出等数据量较大的场景
+     *
+     * @param wrapper  查询条件
+     * @param consumer 逐行处理
+     */
+    void stream(Wrapper<FlowLog> wrapper, Consumer<FlowLog> consumer);
+
+    /**
+     * 查找可以归档的回合，即最后一条日志进入最终状态且早于before的回合
+     *
+     * @param flowName         流程名称
+     * @param entityName       实体名称
+     * @param terminalStatuses 最终状态
+     * @param before           最后一条日志的创建时间上限
+     * @param limit            最多返回的回合数
+     * @return 回合id
+     */
+    List<Long> findArchivableRoundIds(String flowName, String entityName, Collection<String> terminalStatuses,
+                                      LocalDateTime before, int limit);
+
+    /**
+     * 在一个事务中把指定回合的审批日志从flow_log移动到flow_log_archive
+     *
+     * @param roundIds 回合id
+     * @return 移动的日志条数
+     */
+    int archiveRounds(Collection<Long> roundIds);
+
+    /**
+     * 在一个只读事务中分别逐行读取flow_log和flow_log_archive，按comparator把两个有序的结果流归并后逐行处理，两个表的结果都不在内存中累积
+     *
+     * @param wrapper    查询条件，需要与comparator的排序一致
+     * @param comparator 查询结果的顺序
+     * @param consumer   逐行处理
+     */
+    void streamWithArchive(Wrapper<FlowLog> wrapper, Comparator<FlowLog> comparator, Consumer<FlowLog> consumer);
+
+    /**
+     * 按条件查询归档表中的审批日志
+     *
+     * @param wrapper 查询条件
+     * @return 审批日志
+     */
+    List<FlowLog> listArchive(Wrapper<FlowLog> wrapper);
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import wiki.capsule.flow.entity.FlowPendingTask;
+import wiki.capsule.flow.enums.TodoEnum;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <pre>
+ * 待办索引表 服务类
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public interface FlowPendingTaskService extends IService<FlowPendingTask> {
+
+    /**
+     * 删除单据原有的待办记录并写入新的待办记录
+     *
+     * @param flowName     流程名称
+     * @param entityName   实体名称
+     * @param orderIds     单据id集合
+     * @param pendingTasks 新的待办记录
+     */
+    void replacePendingTasks(String flowName, String entityName, Collection<Long> orderIds, List<FlowPendingTask> pendingTasks);
+
+    /**
+     * 按角色查询待办单据id，按单据id升序，基于上一页最后一个id分页（keyset），不使用offset
+     *
+     * @param flowName     流程名称
+     * @param entityName   实体名称
+     * @param todoEnum     待办类型
+     * @param roles        角色集合，为空时不限制角色
+     * @param afterOrderId 上一页最后一个单据id，查询第一页时为空
+     * @param limit        每页数量
+     * @return 单据id列表
+     */
+    List<Long> findPendingOrderIds(String flowName, String entityName, TodoEnum todoEnum, Set<String> roles, Long afterOrderId, int limit);
+}
@@ -29,4 +29,10 @@ import wiki.capsule.flow.entity.FlowRound;
  */
 public interface FlowRoundService extends IService<FlowRound> {
 
+    /**
+     * 使用预先生成的ID保存回合
+     *
+     * @param flowRound 已设置ID的回合
+     */
+    void saveWithId(FlowRound flowRound);
 }
@@ -24,17 +24,22 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
+import wiki.capsule.flow.FlowProperties;
 import wiki.capsule.flow.entity.FlowBasic;
+import wiki.capsule.flow.enums.RuleEngine;
 import wiki.capsule.flow.exception.FlowException;
+import wiki.capsule.flow.graph.FlowGraph;
 import wiki.capsule.flow.mapper.FlowBasicMapper;
 import wiki.capsule.flow.service.FlowBasicService;
 import wiki.capsule.flow.utils.RuleUtils;
 import wiki.capsule.flow.vo.FlowMetaVo;
 
+import javax.annotation.Resource;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * <pre>
@@ -48,13 +53,29 @@ import java.util.Map;
 @Service
 public class FlowBasicServiceImpl extends ServiceImpl<FlowBasicMapper, FlowBasic> implements FlowBasicService {
 
+    @Resource
+    private FlowProperties flowProperties;
+
     @Override
     public List<FlowMetaVo> getFlowMetaInfoV1(String flowName) {
-        List<FlowBasic> flowBasics = list(new LambdaQueryWrapper<FlowBasic>().eq(FlowBasic::getFlowName, flowName)
-                .ge(FlowBasic::getTaskOrder, 1));
+        return getFlowMetaInfoV1(new FlowGraph(list(new LambdaQueryWrapper<FlowBasic>().eq(FlowBasic::getFlowName, flowName)
+                .ge(FlowBasic::getTaskOrder, 1))));
+    }
+
+    @Override
+    public List<FlowMetaVo> getFlowMetaInfoV2(String flowName, Object bizEntity) {
+        return getFlowMetaInfoV2(new FlowGraph(list(new LambdaQueryWrapper<FlowBasic>().eq(FlowBasic::getFlowName, flowName)
+                .ge(FlowBasic::getTaskOrder, 1))), bizEntity);
+    }
+
+    @Override
+    public List<FlowMetaVo> getFlowMetaInfoV1(FlowGraph graph) {
         List<FlowMetaVo> flowMetaVoList = new ArrayList<>();
-        for (FlowBasic flowBasic : flowBasics) {
-            if (flowBasic.getNextStatus().startsWith("<%") && flowBasic.getNextStatus().endsWith("%>")) {
+        for (FlowBasic flowBasic : graph.getFlowBasics()) {
+            if (flowBasic.getTaskOrder() == null || flowBasic.getTaskOrder() < 1) {
+                continue;
+            }
+            if (FlowGraph.isRule(flowBasic.getNextStatus())) {
                 if (StringUtils.isBlank(flowBasic.getNextStatusAlias())) {
                     throw new FlowException(10024, "Next status alias can not be empty.");
                 }
@@ -76,29 +97,29 @@ public class FlowBasicServiceImpl extends ServiceImpl<FlowBasicMapper, FlowBasic
     }
 
     @Override
-    public List<FlowMetaVo> getFlowMetaInfoV2(String flowName, Object bizEntity) {
-        List<FlowBasic> flowBasics = list(new LambdaQueryWrapper<FlowBasic>().eq(FlowBasic::getFlowName, flowName)
-                .ge(FlowBasic::getTaskOrder, 1));
-        List<FlowMetaVo> flowMetaVoList = new ArrayList<>();
-        Map<String, FlowBasic> flowBasicMap = new HashMap<>();
-        FlowBasic firstFlow = null;
-        for (FlowBasic flowBasic : flowBasics) {
-            flowBasicMap.put(flowBasic.getPrevStatus(), flowBasic);
-            if (flowBasic.getTaskOrder() == 1) {
-                if (firstFlow != null) {
-                    throw new FlowException(10025, "Only one flow's task order can be 1.");
-                }
-                firstFlow = flowBasic;
-            }
+    public List<FlowMetaVo> getFlowMetaInfoV2(FlowGraph graph, Object bizEntity) {
+        return getFlowMetaInfoV2(graph, bizEntity, flowProperties.getRule().getEngine());
+    }
+
+    @Override
+    public List<FlowMetaVo> getFlowMetaInfoV2(FlowGraph graph, Object bizEntity, RuleEngine ruleEngine) {
+        List<FlowBasic> firstFlows = graph.getFirstFlows();
+        if (firstFlows.size() > 1) {
+            throw new FlowException(10025, "Only one flow's task order can be 1.");
         }
-        if (firstFlow == null) {
+        if (firstFlows.isEmpty()) {
             throw new FlowException(10025, "There must be one flow's task order is 1.");
         }
-        FlowBasic flowBasic = firstFlow;
+        List<FlowMetaVo> flowMetaVoList = new ArrayList<>();
+        Set<FlowBasic> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        FlowBasic flowBasic = firstFlows.get(0);
         while (flowBasic != null) {
+            if (!visited.add(flowBasic)) {
+                throw new FlowException(10026, "Flow must be a directed acyclic graph, cycle found at " + flowBasic.getPrevStatus() + ".");
+            }
             String nextStatus;
-            if (flowBasic.getNextStatus().startsWith("<%") && flowBasic.getNextStatus().endsWith("%>")) {
-                nextStatus = RuleUtils.render(flowBasic.getNextStatus(), "vo", bizEntity);
+            if (FlowGraph.isRule(flowBasic.getNextStatus())) {
+                nextStatus = RuleUtils.evaluate(ruleEngine, flowBasic.getNextStatus(), "vo", bizEntity);
                 FlowMetaVo metaVo = new FlowMetaVo().setPrevStatus(flowBasic.getPrevStatus())
                         .setNextStatus(nextStatus).setAction(flowBasic.getAction());
                 if (StringUtils.isNotBlank(flowBasic.getNextStatusAlias())) {
@@ -118,7 +139,7 @@ public class FlowBasicServiceImpl extends ServiceImpl<FlowBasicMapper, FlowBasic
                 flowMetaVoList.add(metaVo);
                 nextStatus = flowBasic.getNextStatus();
             }
-            flowBasic = flowBasicMap.get(nextStatus);
+            flowBasic = graph.getForwardFlow(nextStatus);
         }
         return flowMetaVoList;
     }
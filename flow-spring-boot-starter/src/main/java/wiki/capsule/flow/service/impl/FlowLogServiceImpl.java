@@ -16,13 +16,25 @@
 
 package wiki.capsule.flow.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import wiki.capsule.flow.entity.FlowLog;
+import wiki.capsule.flow.exception.FlowException;
 import wiki.capsule.flow.mapper.FlowLogMapper;
 import wiki.capsule.flow.service.FlowLogService;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * <pre>
  * 流程审批历史日志表 服务实现类
@@ -35,4 +47,55 @@ import wiki.capsule.flow.service.FlowLogService;
 @Service
 public class FlowLogServiceImpl extends ServiceImpl<FlowLogMapper, FlowLog> implements FlowLogService {
 
+    @Override
+    public void stream(Wrapper<FlowLog> wrapper, Consumer<FlowLog> consumer) {
+        baseMapper.selectStream(wrapper, context -> consumer.accept(context.getResultObject()));
+    }
+
+    @Override
+    public List<Long> findArchivableRoundIds(String flowName, String entityName, Collection<String> terminalStatuses,
+                                             LocalDateTime before, int limit) {
+        return baseMapper.selectArchivableRoundIds(flowName, entityName, terminalStatuses, before, limit);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int archiveRounds(Collection<Long> roundIds) {
+        int copied = baseMapper.copyToArchive(roundIds);
+        int deleted = baseMapper.deleteByRoundIds(roundIds);
+        if (copied != deleted) {
+            // 复制和删除之间回合又写入了新日志，整体回滚，下次归档时重新判断
+            throw new FlowException(10040, "Flow logs of rounds " + roundIds + " changed while archiving, copied " + copied
+                    + " but deleted " + deleted + ".");
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional(readOnly = true, rollbackFor = Exception.class)
+    public void streamWithArchive(Wrapper<FlowLog> wrapper, Comparator<FlowLog> comparator, Consumer<FlowLog> consumer) {
+        try (Cursor<FlowLog> cursor = baseMapper.selectArchiveStream(wrapper)) {
+            Iterator<FlowLog> archived = cursor.iterator();
+            FlowLog[] nextArchived = {archived.hasNext() ? archived.next() : null};
+            baseMapper.selectStream(wrapper, context -> {
+                FlowLog flowLog = context.getResultObject();
+                while (nextArchived[0] != null && comparator.compare(nextArchived[0], flowLog) < 0) {
+                    consumer.accept(nextArchived[0]);
+                    nextArchived[0] = archived.hasNext() ? archived.next() : null;
+                }
+                consumer.accept(flowLog);
+            });
+            while (nextArchived[0] != null) {
+                consumer.accept(nextArchived[0]);
+                nextArchived[0] = archived.hasNext() ? archived.next() : null;
+            }
+        } catch (IOException e) {
+            throw new FlowException(10044, "Close archived flow log cursor failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<FlowLog> listArchive(Wrapper<FlowLog> wrapper) {
+        return baseMapper.selectArchiveList(wrapper);
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.stereotype.Service;
+import wiki.capsule.flow.entity.FlowPendingTask;
+import wiki.capsule.flow.enums.TodoEnum;
+import wiki.capsule.flow.mapper.FlowPendingTaskMapper;
+import wiki.capsule.flow.service.FlowPendingTaskService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <pre>
+ * 待办索引表 服务实现类
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+@Service
+public class FlowPendingTaskServiceImpl extends ServiceImpl<FlowPendingTaskMapper, FlowPendingTask> implements FlowPendingTaskService {
+
+    @Override
+    public void replacePendingTasks(String flowName, String entityName, Collection<Long> orderIds, List<FlowPendingTask> pendingTasks) {
+        if (CollectionUtils.isEmpty(orderIds)) {
+            return;
+        }
+        remove(new LambdaQueryWrapper<FlowPendingTask>()
+                .eq(FlowPendingTask::getFlowName, flowName)
+                .eq(FlowPendingTask::getEntityName, entityName)
+                .in(FlowPendingTask::getOrderId, orderIds));
+        if (CollectionUtils.isNotEmpty(pendingTasks)) {
+            saveBatch(pendingTasks);
+        }
+    }
+
+    @Override
+    public List<Long> findPendingOrderIds(String flowName, String entityName, TodoEnum todoEnum, Set<String> roles, Long afterOrderId, int limit) {
+        QueryWrapper<FlowPendingTask> wrapper = new QueryWrapper<FlowPendingTask>().select("DISTINCT ORDER_ID");
+        wrapper.lambda()
+                .eq(FlowPendingTask::getFlowName, flowName)
+                .eq(FlowPendingTask::getEntityName, entityName)
+                .in(CollectionUtils.isNotEmpty(roles), FlowPendingTask::getHandleRole, roles)
+                .eq(todoEnum == TodoEnum.ONLY_PENDING_SUBMIT, FlowPendingTask::getSubmitTask, 1)
+                .eq(todoEnum == TodoEnum.ONLY_PENDING_APPROVAL, FlowPendingTask::getSubmitTask, 0)
+                .gt(afterOrderId != null, FlowPendingTask::getOrderId, afterOrderId)
+                .orderByAsc(FlowPendingTask::getOrderId)
+                .last("LIMIT " + limit);
+        List<Long> orderIds = new ArrayList<>();
+        for (Object orderId : listObjs(wrapper)) {
+            orderIds.add(((Number) orderId).longValue());
+        }
+        return orderIds;
+    }
+}
@@ -35,4 +35,8 @@ import wiki.capsule.flow.service.FlowRoundService;
 @Service
 public class FlowRoundServiceImpl extends ServiceImpl<FlowRoundMapper, FlowRound> implements FlowRoundService {
 
+    @Override
+    public void saveWithId(FlowRound flowRound) {
+        baseMapper.insertWithId(flowRound);
+    }
 }
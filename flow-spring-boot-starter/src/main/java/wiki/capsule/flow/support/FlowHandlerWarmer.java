@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import wiki.capsule.flow.FlowProperties;
+import wiki.capsule.flow.exception.FlowException;
+import wiki.capsule.flow.handler.AbstractFlowHandler;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ * 启动预热：启动完成后并行调用容器中所有处理器的warmUp()，提前加载流程定义、预编译规则表达式，
+ * 避免部署后的第一批请求承担加载开销，同时把10017~10025等运行时才会暴露的配置问题提前到启动阶段
+ * 默认只打印告警，开启capsule.flow.warm-up.fail-fast时存在配置问题或预热超时则启动失败
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+public class FlowHandlerWarmer implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final FlowProperties.WarmUp config;
+
+    public FlowHandlerWarmer(FlowProperties.WarmUp config) {
+        this.config = config;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Map<String, List<String>> problems = warmUp(event.getApplicationContext());
+        if (config.isFailFast() && !problems.isEmpty()) {
+            throw new FlowException(10043, "Flow handlers " + problems.keySet() + " are misconfigured: " + problems);
+        }
+    }
+
+    /**
+     * 并行预热所有处理器，打印耗时及发现的配置问题
+     *
+     * @param applicationContext 用于查找处理器
+     * @return 处理器名称到配置问题的映射，只包含存在问题的处理器
+     */
+    public Map<String, List<String>> warmUp(ApplicationContext applicationContext) {
+        Map<String, AbstractFlowHandler<?>> handlers = new LinkedHashMap<>();
+        applicationContext.getBeansOfType(AbstractFlowHandler.class).forEach(handlers::put);
+        if (handlers.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        int parallelism = config.getParallelism() > 0 ? config.getParallelism() : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, handlers.size()), runnable -> {
+            Thread thread = new Thread(runnable, "capsule-flow-warm-up-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.currentTimeMillis();
+        Map<String, CompletableFuture<WarmUpResult>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, AbstractFlowHandler<?>> entry : handlers.entrySet()) {
+            AbstractFlowHandler<?> handler = entry.getValue();
+            futures.put(entry.getKey(), CompletableFuture.supplyAsync(() -> {
+                long handlerStart = System.currentTimeMillis();
+                List<String> handlerProblems = handler.warmUp();
+                return new WarmUpResult(handlerProblems, System.currentTimeMillis() - handlerStart);
+            }, executor));
+        }
+        Map<String, List<String>> problems = new LinkedHashMap<>();
+        String slowest = null;
+        long slowestMillis = -1;
+        long deadline = start + config.getTimeout().toMillis();
+        try {
+            for (Map.Entry<String, CompletableFuture<WarmUpResult>> entry : futures.entrySet()) {
+                WarmUpResult result;
+                try {
+                    result = entry.getValue().get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    problems.put(entry.getKey(), Collections.singletonList("Warm up timed out after " + config.getTimeout() + "."));
+                    continue;
+                } catch (ExecutionException e) {
+                    problems.put(entry.getKey(), Collections.singletonList("Warm up failed: " + e.getCause()));
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    problems.put(entry.getKey(), Collections.singletonList("Warm up interrupted."));
+                    break;
+                }
+                if (result.millis > slowestMillis) {
+                    slowest = entry.getKey();
+                    slowestMillis = result.millis;
+                }
+                if (!result.problems.isEmpty()) {
+                    problems.put(entry.getKey(), result.problems);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Map.Entry<String, List<String>> entry : problems.entrySet()) {
+            log.warn("Flow handler {} is misconfigured: {}", entry.getKey(), entry.getValue());
+        }
+        log.info("Warmed up {} flow handlers in {} ms with parallelism {}, slowest {} ({} ms), {} misconfigured.",
+                handlers.size(), System.currentTimeMillis() - start, Math.min(parallelism, handlers.size()),
+                slowest, slowestMillis, problems.size());
+        return problems;
+    }
+
+    private static class WarmUpResult {
+
+        private final List<String> problems;
+
+        private final long millis;
+
+        private WarmUpResult(List<String> problems, long millis) {
+            this.problems = problems;
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <pre>
+ * 启动完成后通过DatabaseMetaData检查审批流查询所需的组合索引，只比较索引列的前缀，不要求索引名称一致
+ * 缺失时打印告警及对应的建索引语句，完整的建表及索引脚本见classpath:db/capsule-flow/{mysql,h2}
+ * 表不存在（如未启用的可选表）时跳过该表的检查
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+public class FlowIndexChecker implements ApplicationListener<ApplicationReadyEvent> {
+
+    /**
+     * 审批流查询所需的索引，与db/capsule-flow/{mysql,h2}/V2__add_flow_indexes.sql、V1中flow_pending_task及V3中归档相关的索引保持一致
+     */
+    public static final List<IndexDefinition> EXPECTED_INDEXES = Collections.unmodifiableList(Arrays.asList(
+            new IndexDefinition("flow_basic", "IDX_FLOW_BASIC_FLOW", "FLOW_NAME", "ENTITY_NAME", "PREV_STATUS", "ACTION"),
+            new IndexDefinition("flow_log", "IDX_FLOW_LOG_ROUND", "ROUND_ID", "ACTION", "PREV_STATUS"),
+            new IndexDefinition("flow_log", "IDX_FLOW_LOG_ORDER", "FLOW_NAME", "ENTITY_NAME", "ORDER_ID", "ROUND_ID", "CREATE_TIME"),
+            new IndexDefinition("flow_log", "IDX_FLOW_LOG_ARCHIVE_SCAN", "FLOW_NAME", "ENTITY_NAME", "NEXT_STATUS", "CREATE_TIME"),
+            new IndexDefinition("flow_log_archive", "IDX_FLOW_LOG_ARCHIVE_ORDER", "FLOW_NAME", "ENTITY_NAME", "ORDER_ID", "ROUND_ID", "CREATE_TIME"),
+            new IndexDefinition("flow_pending_task", "IDX_FLOW_PENDING_TASK_ROLE", "FLOW_NAME", "ENTITY_NAME", "HANDLE_ROLE", "SUBMIT_TASK", "ORDER_ID"),
+            new IndexDefinition("flow_pending_task", "IDX_FLOW_PENDING_TASK_ORDER", "ORDER_ID", "FLOW_NAME", "ENTITY_NAME")));
+
+    private final DataSource dataSource;
+
+    public FlowIndexChecker(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        try {
+            List<IndexDefinition> missing = findMissingIndexes();
+            if (missing.isEmpty()) {
+                log.info("All {} flow indexes are present.", EXPECTED_INDEXES.size());
+                return;
+            }
+            StringBuilder ddl = new StringBuilder();
+            for (IndexDefinition index : missing) {
+                ddl.append(System.lineSeparator()).append(index.toDdl());
+            }
+            log.warn("Missing {} flow indexes, flow queries will scan the whole table. Create them with:{}", missing.size(), ddl);
+        } catch (SQLException | RuntimeException e) {
+            log.warn("Check flow indexes failed.", e);
+        }
+    }
+
+    /**
+     * 查找缺失的索引
+     *
+     * @return 缺失的索引，表不存在时不计入
+     * @throws SQLException 读取元数据失败
+     */
+    public List<IndexDefinition> findMissingIndexes() throws SQLException {
+        List<IndexDefinition> missing = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, List<List<String>>> tableIndexes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (IndexDefinition index : EXPECTED_INDEXES) {
+                List<List<String>> indexes = tableIndexes.get(index.getTable());
+                if (indexes == null) {
+                    indexes = readIndexes(connection, metaData, index.getTable());
+                    tableIndexes.put(index.getTable(), indexes);
+                }
+                if (indexes != null && !index.isCoveredBy(indexes)) {
+                    missing.add(index);
+                }
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * 读取表上所有索引的列（按索引内顺序），表名按原样、大写、小写依次尝试以兼容不同数据库的标识符大小写
+     *
+     * @return 索引列列表，表不存在时返回null
+     */
+    private static List<List<String>> readIndexes(Connection connection, DatabaseMetaData metaData, String table) throws SQLException {
+        for (String name : new String[]{table, table.toUpperCase(), table.toLowerCase()}) {
+            if (!tableExists(connection, metaData, name)) {
+                continue;
+            }
+            Map<String, Map<Short, String>> columns = new TreeMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, name, false, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    String columnName = rs.getString("COLUMN_NAME");
+                    if (indexName == null || columnName == null) {
+                        continue;
+                    }
+                    columns.computeIfAbsent(indexName, k -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"), columnName);
+                }
+            }
+            List<List<String>> indexes = new ArrayList<>(columns.size());
+            for (Map<Short, String> indexColumns : columns.values()) {
+                indexes.add(new ArrayList<>(indexColumns.values()));
+            }
+            return indexes;
+        }
+        return null;
+    }
+
+    private static boolean tableExists(Connection connection, DatabaseMetaData metaData, String table) throws SQLException {
+        try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, table, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * 期望存在的索引
+     */
+    public static final class IndexDefinition {
+
+        private final String table;
+
+        private final String name;
+
+        private final List<String> columns;
+
+        IndexDefinition(String table, String name, String... columns) {
+            this.table = table;
+            this.name = name;
+            this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+        }
+
+        /**
+         * 判断是否存在以期望列为前缀的索引，列名不区分大小写
+         */
+        boolean isCoveredBy(List<List<String>> indexes) {
+            for (List<String> indexColumns : indexes) {
+                if (indexColumns.size() < columns.size()) {
+                    continue;
+                }
+                boolean matched = true;
+                for (int i = 0; i < columns.size() && matched; i++) {
+                    matched = columns.get(i).equalsIgnoreCase(indexColumns.get(i));
+                }
+                if (matched) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return MySQL和H2通用的建索引语句
+         */
+        public String toDdl() {
+            return "CREATE INDEX " + name + " ON " + table + " (" + String.join(", ", columns) + ");";
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
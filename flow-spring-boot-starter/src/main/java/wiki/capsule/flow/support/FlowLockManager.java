@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wiki.capsule.flow.FlowProperties;
+import wiki.capsule.flow.exception.FlowException;
+import wiki.capsule.flow.metrics.FlowMetrics;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <pre>
+ * 单据级别的JVM内分段锁，按(entityName, orderId)的哈希值映射到固定数量的ReentrantLock上
+ * 不同单据可能映射到同一把锁，锁数量越多冲突越少；同一线程可重入
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Component
+public class FlowLockManager {
+
+    @Resource
+    private FlowProperties flowProperties;
+    @Resource
+    private FlowMetrics flowMetrics;
+
+    private ReentrantLock[] stripes;
+
+    @PostConstruct
+    public void init() {
+        int size = 1;
+        while (size < flowProperties.getConcurrency().getLockStripes() && size < (1 << 16)) {
+            size <<= 1;
+        }
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 获取单据对应的锁，已被其它线程持有时记录一次锁竞争，超过capsule.flow.concurrency.lock-timeout仍未获取到则抛出异常
+     *
+     * @param flowName   流程名称，只用于度量
+     * @param entityName 实体名称
+     * @param orderId    单据ID
+     * @return 已获取的锁，调用方需要在finally中通过{@link #unlock(ReentrantLock)}释放
+     */
+    public ReentrantLock lock(String flowName, String entityName, Long orderId) {
+        ReentrantLock lock = stripe(entityName, orderId);
+        if (lock.tryLock()) {
+            return lock;
+        }
+        flowMetrics.concurrency(flowName, entityName, FlowMetrics.EVENT_LOCK_CONTENDED);
+        boolean locked;
+        try {
+            locked = lock.tryLock(flowProperties.getConcurrency().getLockTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlowException(10034, "Interrupted while waiting for the lock of document " + orderId + ".");
+        }
+        if (!locked) {
+            flowMetrics.concurrency(flowName, entityName, FlowMetrics.EVENT_LOCK_TIMEOUT);
+            throw new FlowException(10034, "Timed out waiting for the lock of document " + orderId + ".");
+        }
+        return lock;
+    }
+
+    /**
+     * 按分段下标的顺序获取多张单据对应的锁，多个线程同时批量加锁时不会互相等待形成死锁，映射到同一分段的单据只加一次锁
+     * 任一把锁获取失败时释放已获取的锁并抛出异常
+     *
+     * @param flowName   流程名称，只用于度量
+     * @param entityName 实体名称
+     * @param orderIds   单据ID
+     * @return 已获取的锁，调用方需要在finally中逐个通过{@link #unlock(ReentrantLock)}释放
+     */
+    public List<ReentrantLock> lockAll(String flowName, String entityName, Collection<Long> orderIds) {
+        TreeMap<Integer, Long> ordered = new TreeMap<>();
+        for (Long orderId : orderIds) {
+            ordered.putIfAbsent(index(entityName, orderId), orderId);
+        }
+        List<ReentrantLock> locks = new ArrayList<>(ordered.size());
+        try {
+            for (Long orderId : ordered.values()) {
+                locks.add(lock(flowName, entityName, orderId));
+            }
+        } catch (RuntimeException e) {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+            throw e;
+        }
+        return locks;
+    }
+
+    /**
+     * 释放锁，当前线程处于事务中时推迟到事务结束后释放，避免其它线程在提交前读取到旧的审批状态
+     *
+     * @param lock lock返回的锁
+     */
+    public void unlock(ReentrantLock lock) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lock.unlock();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+    private ReentrantLock stripe(String entityName, Long orderId) {
+        return stripes[index(entityName, orderId)];
+    }
+
+    private int index(String entityName, Long orderId) {
+        int hash = 31 * entityName.hashCode() + orderId.hashCode();
+        hash ^= hash >>> 16;
+        return hash & (stripes.length - 1);
+    }
+}
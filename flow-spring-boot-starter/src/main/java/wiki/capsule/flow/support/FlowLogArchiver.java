@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import wiki.capsule.flow.FlowProperties;
+import wiki.capsule.flow.handler.AbstractFlowHandler;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 审批日志定时归档任务，启动完成后按capsule.flow.archive.interval依次调用容器中所有处理器的archiveFlowLogs()
+ * 在单个后台线程中执行，上一次未结束时不会重复执行；某个流程归档失败只打印告警，不影响其他流程
+ * 多实例部署时可以只在一个实例上开启capsule.flow.archive.job-enabled，其他实例只合并读取归档表
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+public class FlowLogArchiver implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final FlowProperties.Archive config;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    public FlowLogArchiver(FlowProperties.Archive config) {
+        this.config = config;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!config.isJobEnabled() || scheduler != null) {
+            return;
+        }
+        ApplicationContext applicationContext = event.getApplicationContext();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "capsule-flow-log-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> archive(applicationContext), interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Flow log archiver started, interval {}, min age {}, chunk size {}.",
+                config.getInterval(), config.getMinAge(), config.getChunkSize());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 归档所有处理器对应流程中已结束的回合
+     *
+     * @param applicationContext 用于查找处理器
+     * @return 移动的审批日志条数
+     */
+    public int archive(ApplicationContext applicationContext) {
+        int total = 0;
+        Map<String, AbstractFlowHandler<?>> handlers = new LinkedHashMap<>();
+        applicationContext.getBeansOfType(AbstractFlowHandler.class).forEach(handlers::put);
+        for (Map.Entry<String, AbstractFlowHandler<?>> entry : handlers.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                int moved = entry.getValue().archiveFlowLogs();
+                if (moved > 0) {
+                    log.info("Archived {} flow logs of handler {} in {} ms.", moved, entry.getKey(), System.currentTimeMillis() - start);
+                }
+                total += moved;
+            } catch (RuntimeException e) {
+                log.warn("Archive flow logs of handler {} failed.", entry.getKey(), e);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import wiki.capsule.flow.FlowProperties;
+import wiki.capsule.flow.entity.FlowLog;
+import wiki.capsule.flow.exception.FlowException;
+import wiki.capsule.flow.mapper.FlowLogMapper;
+import wiki.capsule.flow.service.FlowLogService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <pre>
+ * 审批日志写入器，默认同步调用saveBatch
+ * 开启capsule.flow.log-writer.async后审批日志先进入有界队列，由后台线程按flushSize和flushInterval合并为多行insert写入；
+ * 调用方处于事务中时，日志先登记在当前事务上，提交后才进入队列，回滚时丢弃，不会留下已回滚业务的审批日志
+ * 尚未写入数据库的日志按回合索引，供当前节点查询已处理环节时合并；其他节点看不到这些日志，所以异步写入时并签总是按STATUS_JSON判断
+ * 写入失败的批次不会丢弃：保留在内存中由后台线程持续重试，期间新的日志改为在调用线程同步写入，调用方直接收到异常；
+ * 应用关闭时同步写完队列中剩余的日志，仍然失败时打印这些日志并抛出异常
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+@Component
+public class FlowLogWriter {
+
+    private static final int MAX_RETRIES = 3;
+
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    @Resource
+    private FlowLogService flowLogService;
+    @Resource
+    private FlowLogMapper flowLogMapper;
+    @Resource
+    private FlowProperties flowProperties;
+    @Resource
+    private ObjectProvider<PlatformTransactionManager> transactionManagerProvider;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * 重试后仍然写入失败的日志，由writeLock保护，后台线程持续重试直到成功
+     */
+    private final List<FlowLog> failed = new ArrayList<>();
+
+    /**
+     * 存在写入失败的日志时为true，此时新的日志在调用线程同步写入
+     */
+    private volatile boolean failing;
+
+    /**
+     * 尚未写入数据库的日志，按回合id索引
+     */
+    private final Map<Long, List<FlowLog>> unflushed = new HashMap<>();
+
+    private volatile BlockingQueue<FlowLog> queue;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    @PostConstruct
+    public void start() {
+        FlowProperties.LogWriter config = flowProperties.getLogWriter();
+        if (!config.isAsync()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        running = true;
+        worker = new Thread(this::drainLoop, "capsule-flow-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Asynchronous flow log writer started, queue capacity {}, flush size {}, flush interval {}.",
+                config.getQueueCapacity(), config.getFlushSize(), config.getFlushInterval());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            worker.join(flowProperties.getLogWriter().getFlushInterval().toMillis() + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (FlowException e) {
+            writeLock.lock();
+            try {
+                log.error("Flow log writer stopped with {} unwritten flow logs: {}", failed.size(), JSON.toJSONString(failed), e);
+            } finally {
+                writeLock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    public boolean isAsync() {
+        return queue != null;
+    }
+
+    /**
+     * 写入审批日志，同步模式或存在写入失败的日志时直接saveBatch；异步模式下进入队列，处于事务中时在事务提交后才进入队列，
+     * 队列已满时按overflowPolicy处理
+     *
+     * @param flowLogs 审批日志
+     */
+    public void write(List<FlowLog> flowLogs) {
+        if (flowLogs.isEmpty()) {
+            return;
+        }
+        if (!isAsync() || !running || failing) {
+            flowLogService.saveBatch(flowLogs);
+            return;
+        }
+        // 入队时记录创建时间，避免延迟写入影响按CREATE_TIME排序
+        for (FlowLog flowLog : flowLogs) {
+            if (flowLog.getCreateTime() == null) {
+                flowLog.setCreateTime(LocalDateTime.now());
+            }
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            getTransactionLogs().addAll(flowLogs);
+            return;
+        }
+        enqueue(flowLogs, false);
+    }
+
+    /**
+     * 逐条放入队列，无法入队的日志由调用线程同步写入；事务提交后的回调中已经不能使用原事务，此时在新事务中写入
+     */
+    private void enqueue(List<FlowLog> flowLogs, boolean afterCommit) {
+        for (int i = 0; i < flowLogs.size(); i++) {
+            FlowLog flowLog = flowLogs.get(i);
+            if (failing) {
+                writeNow(new ArrayList<>(flowLogs.subList(i, flowLogs.size())), afterCommit);
+                return;
+            }
+            addUnflushed(flowLog);
+            if (!enqueue(flowLog)) {
+                removeUnflushed(flowLog);
+                writeNow(new ArrayList<>(flowLogs.subList(i, flowLogs.size())), afterCommit);
+                return;
+            }
+        }
+    }
+
+    private void writeNow(List<FlowLog> flowLogs, boolean afterCommit) {
+        PlatformTransactionManager manager = afterCommit ? transactionManagerProvider.getIfAvailable() : null;
+        if (manager == null) {
+            flowLogMapper.insertBatch(flowLogs);
+            return;
+        }
+        TransactionTemplate template = new TransactionTemplate(manager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.execute(status -> flowLogMapper.insertBatch(flowLogs));
+    }
+
+    /**
+     * 获取当前事务中登记的审批日志，首次调用时注册事务同步：提交后入队，回滚时丢弃
+     */
+    @SuppressWarnings("unchecked")
+    private List<FlowLog> getTransactionLogs() {
+        List<FlowLog> transactionLogs = (List<FlowLog>) TransactionSynchronizationManager.getResource(this);
+        if (transactionLogs != null) {
+            return transactionLogs;
+        }
+        List<FlowLog> pending = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(FlowLogWriter.this);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(FlowLogWriter.this, pending);
+            }
+
+            @Override
+            public void afterCommit() {
+                TransactionSynchronizationManager.unbindResourceIfPossible(FlowLogWriter.this);
+                if (!isAsync() || !running) {
+                    writeNow(pending, true);
+                } else {
+                    enqueue(pending, true);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(FlowLogWriter.this);
+            }
+        });
+        return pending;
+    }
+
+    /**
+     * 按overflowPolicy放入队列
+     *
+     * @return false表示需要由调用线程同步写入
+     */
+    private boolean enqueue(FlowLog flowLog) {
+        if (queue.offer(flowLog)) {
+            return true;
+        }
+        switch (flowProperties.getLogWriter().getOverflowPolicy()) {
+            case BLOCK:
+                try {
+                    queue.put(flowLog);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    removeUnflushed(flowLog);
+                    throw new FlowException(10032, "Interrupted while waiting for flow log queue.");
+                }
+            case FAIL:
+                removeUnflushed(flowLog);
+                throw new FlowException(10032, "Flow log queue is full.");
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 查询指定回合内尚未写入数据库的审批日志，包括当前事务中登记、尚未提交的日志
+     *
+     * @param roundIds 回合id集合
+     * @return 审批日志
+     */
+    @SuppressWarnings("unchecked")
+    public List<FlowLog> findUnflushed(Collection<Long> roundIds) {
+        List<FlowLog> flowLogs = new ArrayList<>();
+        if (!isAsync()) {
+            return flowLogs;
+        }
+        List<FlowLog> transactionLogs = (List<FlowLog>) TransactionSynchronizationManager.getResource(this);
+        if (transactionLogs != null) {
+            for (FlowLog flowLog : transactionLogs) {
+                if (roundIds.contains(flowLog.getRoundId())) {
+                    flowLogs.add(flowLog);
+                }
+            }
+        }
+        synchronized (unflushed) {
+            for (Long roundId : roundIds) {
+                List<FlowLog> roundLogs = unflushed.get(roundId);
+                if (roundLogs != null) {
+                    flowLogs.addAll(roundLogs);
+                }
+            }
+        }
+        return flowLogs;
+    }
+
+    /**
+     * 在当前线程同步写入之前失败的日志和队列中所有日志，并等待后台线程正在写入的批次完成
+     *
+     * @throws FlowException 重试后仍然写入失败，失败的日志保留在内存中等待后台线程重试
+     */
+    public void flush() {
+        if (!isAsync()) {
+            return;
+        }
+        int flushSize = flowProperties.getLogWriter().getFlushSize();
+        List<FlowLog> batch = new ArrayList<>(flushSize);
+        writeLock.lock();
+        try {
+            if (!failed.isEmpty()) {
+                if (!writeBatch(failed)) {
+                    throw new FlowException(10032, "Failed to write " + failed.size() + " flow logs.");
+                }
+                failed.clear();
+            }
+            while (queue.drainTo(batch, flushSize) > 0) {
+                if (!writeBatch(batch)) {
+                    failed.addAll(batch);
+                    throw new FlowException(10032, "Failed to write " + failed.size() + " flow logs.");
+                }
+                batch.clear();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void drainLoop() {
+        FlowProperties.LogWriter config = flowProperties.getLogWriter();
+        long intervalNanos = config.getFlushInterval().toNanos();
+        List<FlowLog> batch = new ArrayList<>(config.getFlushSize());
+        while (running && !Thread.currentThread().isInterrupted()) {
+            if (!retryFailed()) {
+                continue;
+            }
+            FlowLog first;
+            try {
+                first = queue.poll(intervalNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // 剩余日志由stop()同步写入
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            writeLock.lock();
+            try {
+                batch.add(first);
+                collect(batch, config.getFlushSize(), System.nanoTime() + intervalNanos);
+                if (!writeBatch(batch)) {
+                    failed.addAll(batch);
+                }
+            } finally {
+                batch.clear();
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 继续从队列中取日志，直到达到flushSize或超过deadline
+     */
+    private void collect(List<FlowLog> batch, int flushSize, long deadline) {
+        while (batch.size() < flushSize) {
+            queue.drainTo(batch, flushSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushSize || remaining <= 0) {
+                return;
+            }
+            try {
+                FlowLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 重试之前写入失败的日志，失败时等待一段时间后返回false
+     *
+     * @return true表示没有待重试的日志
+     */
+    private boolean retryFailed() {
+        writeLock.lock();
+        try {
+            if (failed.isEmpty() || writeBatch(failed)) {
+                failed.clear();
+                return true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * 写入一个批次，失败时立即重试，仍然失败时标记为failing并保留日志，由调用方决定后续处理
+     *
+     * @return true表示写入成功
+     */
+    private boolean writeBatch(List<FlowLog> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                flowLogMapper.insertBatch(batch);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_RETRIES) {
+                    failing = true;
+                    log.error("Failed to write {} flow logs after {} attempts, they are kept for retry and new flow logs "
+                            + "are written synchronously until it succeeds.", batch.size(), attempt, e);
+                    return false;
+                }
+                log.warn("Failed to write {} flow logs, attempt {}.", batch.size(), attempt, e);
+            }
+        }
+        for (FlowLog flowLog : batch) {
+            removeUnflushed(flowLog);
+        }
+        if (batch == failed || failed.isEmpty()) {
+            failing = false;
+        }
+        return true;
+    }
+
+    private void addUnflushed(FlowLog flowLog) {
+        synchronized (unflushed) {
+            unflushed.computeIfAbsent(flowLog.getRoundId(), k -> new ArrayList<>()).add(flowLog);
+        }
+    }
+
+    private void removeUnflushed(FlowLog flowLog) {
+        synchronized (unflushed) {
+            List<FlowLog> roundLogs = unflushed.get(flowLog.getRoundId());
+            if (roundLogs == null) {
+                return;
+            }
+            for (Iterator<FlowLog> iterator = roundLogs.iterator(); iterator.hasNext(); ) {
+                if (iterator.next() == flowLog) {
+                    iterator.remove();
+                    break;
+                }
+            }
+            if (roundLogs.isEmpty()) {
+                unflushed.remove(flowLog.getRoundId());
+            }
+        }
+    }
+}
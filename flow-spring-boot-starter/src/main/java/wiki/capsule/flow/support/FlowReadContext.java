@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+/**
+ * <pre>
+ * 记录当前线程是否正在执行审批流引擎的只读查询，供FlowRoutingDataSource决定是否路由到只读副本
+ * 只读查询嵌套在process()等写操作中时视为写操作；写操作结束时记录时间，在容忍的复制延迟内同一线程的只读查询仍然读主库（read-your-writes）
+ * beginRead/endRead、beginWrite/endWrite必须在finally中成对调用
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public final class FlowReadContext {
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private FlowReadContext() {
+    }
+
+    public static void beginRead() {
+        STATE.get().readDepth++;
+    }
+
+    public static void endRead() {
+        STATE.get().readDepth--;
+    }
+
+    public static void beginWrite() {
+        STATE.get().writeDepth++;
+    }
+
+    public static void endWrite() {
+        State state = STATE.get();
+        if (--state.writeDepth == 0) {
+            state.lastWriteNanos = System.nanoTime();
+            state.written = true;
+        }
+    }
+
+    /**
+     * 判断当前线程的查询是否可以读取只读副本
+     *
+     * @param maxStalenessNanos 副本允许的最大复制延迟，同一线程最近一次写操作在此时间内时读主库
+     * @return true表示可以读取副本
+     */
+    public static boolean isReplicaReadable(long maxStalenessNanos) {
+        State state = STATE.get();
+        if (state.readDepth <= 0 || state.writeDepth > 0) {
+            return false;
+        }
+        return !state.written || System.nanoTime() - state.lastWriteNanos > maxStalenessNanos;
+    }
+
+    private static final class State {
+
+        private int readDepth;
+
+        private int writeDepth;
+
+        private boolean written;
+
+        private long lastWriteNanos;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 主库/只读副本路由数据源，包装应用原有的主数据源，只有审批流引擎的只读查询（见FlowReadContext）才会路由到副本
+ * 应用自身的查询、process()等写操作、存在事务时以及同一线程写操作后maxStaleness内的查询都使用主库
+ * 关闭时同时关闭主库，以及由starter根据capsule.flow.replica.url创建的副本
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+public class FlowRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+
+    private static final String REPLICA = "replica";
+
+    private final DataSource primary;
+
+    private final DataSource replica;
+
+    private final boolean ownsReplica;
+
+    private final long maxStalenessNanos;
+
+    public FlowRoutingDataSource(DataSource primary, DataSource replica, Duration maxStaleness, boolean ownsReplica) {
+        this.primary = primary;
+        this.replica = replica;
+        this.ownsReplica = ownsReplica;
+        this.maxStalenessNanos = maxStaleness == null || maxStaleness.isNegative() ? 0 : maxStaleness.toNanos();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.put(REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (FlowReadContext.isReplicaReadable(maxStalenessNanos) && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (ownsReplica && replica instanceof AutoCloseable) {
+            ((AutoCloseable) replica).close();
+        }
+        if (primary instanceof AutoCloseable) {
+            ((AutoCloseable) primary).close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import wiki.capsule.flow.FlowProperties;
+import wiki.capsule.flow.exception.FlowException;
+
+import javax.sql.DataSource;
+
+/**
+ * <pre>
+ * 开启capsule.flow.replica.enabled时，把名为primary-bean-name的主数据源包装为FlowRoutingDataSource
+ * 副本优先使用容器中名为flowReplicaDataSource的Bean，没有时按capsule.flow.replica.url等配置创建
+ * BeanPostProcessor初始化较早，配置直接从Environment绑定
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+public class FlowRoutingDataSourcePostProcessor implements BeanPostProcessor, BeanFactoryAware, EnvironmentAware {
+
+    public static final String REPLICA_DATA_SOURCE = "flowReplicaDataSource";
+
+    private BeanFactory beanFactory;
+
+    private Environment environment;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof DataSource) || bean instanceof FlowRoutingDataSource) {
+            return bean;
+        }
+        FlowProperties.Replica replica = Binder.get(environment).bind("capsule.flow", FlowProperties.class)
+                .orElseGet(FlowProperties::new).getReplica();
+        if (!beanName.equals(replica.getPrimaryBeanName())) {
+            return bean;
+        }
+        DataSource replicaDataSource;
+        boolean ownsReplica = false;
+        if (beanFactory.containsBean(REPLICA_DATA_SOURCE)) {
+            replicaDataSource = beanFactory.getBean(REPLICA_DATA_SOURCE, DataSource.class);
+        } else if (StringUtils.isNotBlank(replica.getUrl())) {
+            replicaDataSource = DataSourceBuilder.create().url(replica.getUrl()).username(replica.getUsername())
+                    .password(replica.getPassword()).driverClassName(replica.getDriverClassName()).build();
+            ownsReplica = true;
+        } else {
+            throw new FlowException(10039, "Replica data source is not configured, set capsule.flow.replica.url or define bean " + REPLICA_DATA_SOURCE + ".");
+        }
+        log.info("Flow read-only queries on data source {} are routed to the replica, max staleness {}.", beanName, replica.getMaxStaleness());
+        return new FlowRoutingDataSource((DataSource) bean, replicaDataSource, replica.getMaxStaleness(), ownsReplica);
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+}
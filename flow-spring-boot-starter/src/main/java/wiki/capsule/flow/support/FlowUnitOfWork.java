@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import wiki.capsule.flow.entity.FlowLog;
+import wiki.capsule.flow.entity.FlowRound;
+import wiki.capsule.flow.exception.FlowConflictException;
+import wiki.capsule.flow.exception.FlowException;
+import wiki.capsule.flow.mapper.FlowLogMapper;
+import wiki.capsule.flow.mapper.FlowRoundMapper;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * <pre>
+ * 流程处理的工作单元，开启capsule.flow.unit-of-work.enabled后process()在一个事务中执行
+ * 处理过程中预先生成ID的回合、审批日志和单据更新先登记在当前线程的工作单元中，处理结束时单据更新逐条执行，
+ * 回合和审批日志通过一个BATCH执行器的SqlSession一次flush，与待办索引以及afterProcess中的写入在同一个事务中提交或回滚
+ * 单据更新不进入JDBC批处理：部分驱动（如开启rewriteBatchedStatements的MySQL Connector/J）批量执行时只返回SUCCESS_NO_INFO，无法判断是否冲突
+ * 已经存在事务时加入外层事务（PROPAGATION_REQUIRED），同一线程内嵌套调用时加入外层工作单元
+ * 加入外层事务时冲突会使外层事务只能回滚，process()不会在其中重试，而是把FlowConflictException抛给调用方
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Component
+public class FlowUnitOfWork {
+
+    private final ThreadLocal<Work> current = new ThreadLocal<>();
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+    @Resource
+    private ObjectProvider<PlatformTransactionManager> transactionManagerProvider;
+
+    private volatile TransactionTemplate transactionTemplate;
+
+    /**
+     * 在事务中执行action，正常返回后flush登记的写入，任何异常都会使事务回滚
+     *
+     * @param action 处理逻辑
+     * @param <R>    返回值类型
+     * @return action的返回值
+     */
+    public <R> R execute(Supplier<R> action) {
+        if (current.get() != null) {
+            return action.get();
+        }
+        return getTransactionTemplate().execute(status -> {
+            Work work = new Work();
+            current.set(work);
+            try {
+                R result = action.get();
+                flush(work);
+                return result;
+            } finally {
+                current.remove();
+            }
+        });
+    }
+
+    /**
+     * @return 当前线程是否处于工作单元中
+     */
+    public boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * 登记已预先生成ID的回合，在工作单元结束时先于审批日志批量写入
+     *
+     * @param flowRound 回合
+     */
+    public void addFlowRound(FlowRound flowRound) {
+        requireWork().flowRounds.add(flowRound);
+    }
+
+    /**
+     * 登记审批日志，在工作单元结束时批量写入
+     *
+     * @param flowLogs 审批日志
+     */
+    public void addFlowLogs(List<FlowLog> flowLogs) {
+        requireWork().flowLogs.addAll(flowLogs);
+    }
+
+    /**
+     * 登记单据的updateById，在工作单元结束时先于审批日志逐条执行，更新行数为0时抛出FlowConflictException并回滚
+     *
+     * @param mapperClass 单据的Mapper
+     * @param entity      单据
+     * @param orderId     单据ID，用于异常信息
+     * @param <E>         单据类型
+     */
+    public <E> void addEntityUpdate(Class<? extends BaseMapper<E>> mapperClass, E entity, Long orderId) {
+        requireWork().entityUpdates.add(new EntityUpdate<>(mapperClass, entity, orderId));
+    }
+
+    private Work requireWork() {
+        Work work = current.get();
+        if (work == null) {
+            throw new FlowException(10036, "No active flow unit of work.");
+        }
+        return work;
+    }
+
+    private void flush(Work work) {
+        if (work.flowRounds.isEmpty() && work.flowLogs.isEmpty() && work.entityUpdates.isEmpty()) {
+            return;
+        }
+        if (!work.entityUpdates.isEmpty()) {
+            // 逐条执行以获得准确的更新行数，冲突时不再写入回合和审批日志
+            try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.SIMPLE)) {
+                for (EntityUpdate<?> update : work.entityUpdates) {
+                    if (update.execute(sqlSession) == 0) {
+                        throw new FlowConflictException(update.orderId);
+                    }
+                }
+            }
+        }
+        if (work.flowRounds.isEmpty() && work.flowLogs.isEmpty()) {
+            return;
+        }
+        try (SqlSession batchSqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            FlowRoundMapper flowRoundMapper = batchSqlSession.getMapper(FlowRoundMapper.class);
+            for (FlowRound flowRound : work.flowRounds) {
+                flowRoundMapper.insertWithId(flowRound);
+            }
+            FlowLogMapper flowLogMapper = batchSqlSession.getMapper(FlowLogMapper.class);
+            for (FlowLog flowLog : work.flowLogs) {
+                flowLogMapper.insert(flowLog);
+            }
+            batchSqlSession.flushStatements();
+        }
+    }
+
+    private TransactionTemplate getTransactionTemplate() {
+        TransactionTemplate template = transactionTemplate;
+        if (template == null) {
+            PlatformTransactionManager manager = transactionManagerProvider.getIfAvailable();
+            if (manager == null) {
+                throw new FlowException(10036, "PlatformTransactionManager is required when capsule.flow.unit-of-work.enabled is true.");
+            }
+            template = new TransactionTemplate(manager);
+            transactionTemplate = template;
+        }
+        return template;
+    }
+
+    private static class Work {
+
+        private final List<FlowRound> flowRounds = new ArrayList<>();
+
+        private final List<FlowLog> flowLogs = new ArrayList<>();
+
+        private final List<EntityUpdate<?>> entityUpdates = new ArrayList<>();
+    }
+
+    private static class EntityUpdate<E> {
+
+        private final Class<? extends BaseMapper<E>> mapperClass;
+
+        private final E entity;
+
+        private final Long orderId;
+
+        private EntityUpdate(Class<? extends BaseMapper<E>> mapperClass, E entity, Long orderId) {
+            this.mapperClass = mapperClass;
+            this.entity = entity;
+            this.orderId = orderId;
+        }
+
+        private int execute(SqlSession sqlSession) {
+            return sqlSession.getMapper(mapperClass).updateById(entity);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import lombok.extern.slf4j.Slf4j;
+import wiki.capsule.flow.exception.FlowException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * <pre>
+ * 号段模式的回合ID生成器，每次从FLOW_SEQUENCE表租用blockSize个连续ID，在内存中依次分配
+ * 租用号段使用独立的数据库连接和事务，不加入当前的业务事务，避免序列行锁被长时间持有
+ * 序列不存在时以FLOW_ROUND当前最大ID + 1为起点初始化，与已有的自增ID不冲突；应用重启时未用完的号段会被跳过
+ * 所有节点必须同时切换到HILO（停机切换，不能滚动升级）：仍按AUTO_INCREMENT插入FLOW_ROUND的节点会分配到已被租用号段内的ID，
+ * 之后HILO节点写入同一ID时主键冲突；切回AUTO_INCREMENT前需把FLOW_ROUND的AUTO_INCREMENT调整到flow_sequence.NEXT_VALUE之上
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Slf4j
+public class HiLoRoundIdGenerator implements RoundIdGenerator {
+
+    public static final String SEQUENCE_NAME = "FLOW_ROUND";
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final DataSource dataSource;
+
+    private final int blockSize;
+
+    private long next;
+
+    private long max;
+
+    public HiLoRoundIdGenerator(DataSource dataSource, int blockSize) {
+        if (blockSize <= 0) {
+            throw new FlowException(10037, "Round id block size must be greater than 0.");
+        }
+        this.dataSource = dataSource;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public synchronized Long nextId() {
+        if (next >= max) {
+            max = lease();
+            next = max - blockSize;
+            log.debug("Leased round id block [{}, {}).", next, max);
+        }
+        return next++;
+    }
+
+    /**
+     * 租用一个号段
+     *
+     * @return 号段的结束值（不包含）
+     */
+    private long lease() {
+        SQLException failure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try (Connection connection = dataSource.getConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    long end = allocate(connection);
+                    connection.commit();
+                    return end;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (SQLException e) {
+                // 并发初始化序列时主键冲突，重试后走update分支
+                failure = e;
+            }
+        }
+        throw new FlowException(10037, "Failed to lease round id block from flow_sequence: " + failure.getMessage());
+    }
+
+    private long allocate(Connection connection) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement("UPDATE flow_sequence SET NEXT_VALUE = NEXT_VALUE + ? WHERE NAME = ?")) {
+            update.setLong(1, blockSize);
+            update.setString(2, SEQUENCE_NAME);
+            if (update.executeUpdate() > 0) {
+                try (PreparedStatement select = connection.prepareStatement("SELECT NEXT_VALUE FROM flow_sequence WHERE NAME = ?")) {
+                    select.setString(1, SEQUENCE_NAME);
+                    try (ResultSet resultSet = select.executeQuery()) {
+                        resultSet.next();
+                        return resultSet.getLong(1);
+                    }
+                }
+            }
+        }
+        long start;
+        try (PreparedStatement select = connection.prepareStatement("SELECT COALESCE(MAX(ID), 0) + 1 FROM flow_round");
+             ResultSet resultSet = select.executeQuery()) {
+            resultSet.next();
+            start = resultSet.getLong(1);
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO flow_sequence (NAME, NEXT_VALUE) VALUES (?, ?)")) {
+            insert.setString(1, SEQUENCE_NAME);
+            insert.setLong(2, start + blockSize);
+            insert.executeUpdate();
+        }
+        return start + blockSize;
+    }
+}
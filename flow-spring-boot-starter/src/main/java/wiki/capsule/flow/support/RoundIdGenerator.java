@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+/**
+ * <pre>
+ * 审批回合ID生成器，容器中存在自定义的RoundIdGenerator时优先使用，否则按capsule.flow.round-id.strategy创建
+ * 预先生成ID后FLOW_ROUND记录不需要立即写入，开启工作单元时与审批日志一起批量写入
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public interface RoundIdGenerator {
+
+    /**
+     * 不预先生成ID，由数据库自增生成
+     */
+    RoundIdGenerator AUTO_INCREMENT = () -> null;
+
+    /**
+     * 生成下一个回合ID，需要线程安全
+     *
+     * @return 回合ID，返回null表示由数据库自增生成
+     */
+    Long nextId();
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.support;
+
+import org.springframework.stereotype.Component;
+import wiki.capsule.flow.FlowProperties;
+import wiki.capsule.flow.rule.RuleCompiler;
+import wiki.capsule.flow.utils.RuleUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * 按配置设置规则表达式缓存容量，规则表达式的预编译在加载流程定义时完成，启动时由FlowHandlerWarmer加载所有处理器的流程定义
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Component
+public class RuleTemplateWarmer {
+
+    @Resource
+    private FlowProperties flowProperties;
+
+    @PostConstruct
+    public void init() {
+        RuleUtils.getTemplateCache().setMaxSize(flowProperties.getRule().getCacheSize());
+        RuleCompiler.getRuleCache().setMaxSize(flowProperties.getRule().getCacheSize());
+    }
+}
@@ -18,11 +18,10 @@ package wiki.capsule.flow.utils;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.reflect.FieldUtils;
 import wiki.capsule.flow.exception.FlowException;
 
 /**
- * Class工具类
+ * Class工具类，字段读写通过按类缓存的FieldAccessor完成，避免每次调用都反射查找字段
  *
  * @author DiGuoZhiMeng
  * @since 2020-06-14
@@ -34,29 +33,24 @@ public class ClassUtils {
         if (target == null || StringUtils.isBlank(fieldName)) {
             throw new FlowException(10012, "Target object or field name can not be empty when set field value.");
         }
-        try {
-            FieldUtils.writeField(target, fieldName, value, true);
-        } catch (IllegalAccessException e) {
-            throw new FlowException(10011, "Field name " + fieldName + "  may not exist in object " + target.getClass().getCanonicalName());
-        }
+        FieldAccessor.of(target.getClass(), fieldName).set(target, value);
     }
 
     public static Long getLongValue(Object target, String fieldName) {
         if (target == null || StringUtils.isBlank(fieldName)) {
             throw new FlowException(10013, "Target object or field name can not be empty when get [Long] filed value.");
         }
+        Object longValue = FieldAccessor.of(target.getClass(), fieldName).get(target);
+        if (longValue == null) {
+            return null;
+        }
+        if (longValue instanceof Long) {
+            return (Long) longValue;
+        }
         try {
-            Object longValue = FieldUtils.readField(target, fieldName, true);
-            if (longValue == null) {
-                return null;
-            }
-            try {
-                return Long.parseLong(longValue.toString());
-            } catch (NumberFormatException e) {
-                throw new FlowException(10015, "Value " + longValue + " can not be parsed to Long type.");
-            }
-        } catch (IllegalAccessException e) {
-            throw new FlowException(10011, "Field name " + fieldName + "  may not exist in object " + target.getClass().getCanonicalName());
+            return Long.parseLong(longValue.toString());
+        } catch (NumberFormatException e) {
+            throw new FlowException(10015, "Value " + longValue + " can not be parsed to Long type.");
         }
     }
 
@@ -64,15 +58,26 @@ public class ClassUtils {
         if (target == null || StringUtils.isBlank(fieldName)) {
             throw new FlowException(10014, "Target object or field name can not be empty when get [String] filed value.");
         }
-        try {
-            Object longValue = FieldUtils.readField(target, fieldName, true);
-            if (longValue == null) {
-                return null;
-            }
-            return String.valueOf(longValue);
-        } catch (IllegalAccessException e) {
-            throw new FlowException(10011, "Field name " + fieldName + "  may not exist in object " + target.getClass().getCanonicalName());
+        Object value = FieldAccessor.of(target.getClass(), fieldName).get(target);
+        if (value == null) {
+            return null;
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * 将源对象的字段值复制到目标对象的同名字段
+     *
+     * @param source    源对象
+     * @param target    目标对象
+     * @param fieldName 字段名称
+     */
+    public static void copyFieldValue(Object source, Object target, String fieldName) {
+        if (source == null || target == null || StringUtils.isBlank(fieldName)) {
+            throw new FlowException(10033, "Source object, target object or field name can not be empty when copy field value.");
         }
+        Object value = FieldAccessor.of(source.getClass(), fieldName).get(source);
+        FieldAccessor.of(target.getClass(), fieldName).set(target, value);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.utils;
+
+import wiki.capsule.flow.exception.FlowException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 基于MethodHandle的字段访问器，按(Class, fieldName)缓存，只在首次访问时查找字段和做访问检查
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public final class FieldAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<ConcurrentMap<String, FieldAccessor>> ACCESSORS = new ClassValue<ConcurrentMap<String, FieldAccessor>>() {
+        @Override
+        protected ConcurrentMap<String, FieldAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final String fieldName;
+
+    private final Class<?> fieldType;
+
+    private final MethodHandle getter;
+
+    private final MethodHandle setter;
+
+    private FieldAccessor(Field field) throws IllegalAccessException {
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle rawGetter = lookup.unreflectGetter(field);
+        MethodHandle rawSetter = lookup.unreflectSetter(field);
+        if (Modifier.isStatic(field.getModifiers())) {
+            rawGetter = MethodHandles.dropArguments(rawGetter, 0, Object.class);
+            rawSetter = MethodHandles.dropArguments(rawSetter, 0, Object.class);
+        }
+        this.fieldName = field.getName();
+        this.fieldType = field.getType();
+        this.getter = rawGetter.asType(GETTER_TYPE);
+        this.setter = rawSetter.asType(SETTER_TYPE);
+    }
+
+    /**
+     * 获取字段访问器，会沿父类查找字段，结果按类缓存
+     *
+     * @param type      目标类
+     * @param fieldName 字段名称
+     * @return FieldAccessor
+     */
+    public static FieldAccessor of(Class<?> type, String fieldName) {
+        ConcurrentMap<String, FieldAccessor> accessors = ACCESSORS.get(type);
+        FieldAccessor accessor = accessors.get(fieldName);
+        if (accessor != null) {
+            return accessor;
+        }
+        Field field = findField(type, fieldName);
+        if (field == null) {
+            throw new FlowException(10011, "Field name " + fieldName + "  may not exist in object " + type.getCanonicalName());
+        }
+        try {
+            accessor = new FieldAccessor(field);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new FlowException(10011, "Field name " + fieldName + "  can not be accessed in object " + type.getCanonicalName());
+        }
+        FieldAccessor previous = accessors.putIfAbsent(fieldName, accessor);
+        return previous == null ? accessor : previous;
+    }
+
+    private static Field findField(Class<?> type, String fieldName) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                return current.getDeclaredField(fieldName);
+            } catch (NoSuchFieldException e) {
+                // 继续查找父类
+            }
+        }
+        return null;
+    }
+
+    public Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Throwable e) {
+            throw new FlowException(10011, "Field name " + fieldName + "  can not be read from object " + target.getClass().getCanonicalName());
+        }
+    }
+
+    public void set(Object target, Object value) {
+        try {
+            setter.invokeExact(target, value);
+        } catch (Throwable e) {
+            throw new FlowException(10027, "Value " + value + " can not be assigned to field " + fieldName + " of type " + fieldType.getName() + ".");
+        }
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public Class<?> getFieldType() {
+        return fieldType;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 按字符串key缓存的有界LRU，超过容量时淘汰最久未使用的条目，记录命中、未命中和淘汰次数
+ *
+ * @param <V> 缓存值类型
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class LruCache<V> {
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private volatile int maxSize;
+
+    private final Consumer<String> evictionListener;
+
+    private final LinkedHashMap<String, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public LruCache(int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param maxSize          最大缓存条目数量
+     * @param evictionListener 条目被淘汰时的回调，在持有缓存锁时调用，不要在其中访问本缓存
+     */
+    public LruCache(int maxSize, Consumer<String> evictionListener) {
+        this.maxSize = maxSize;
+        this.evictionListener = evictionListener;
+    }
+
+    public V get(String key) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        if (value == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    public void put(String key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+            trim();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 调整缓存容量，缩小时立即淘汰超出部分
+     *
+     * @param maxSize 最大缓存条目数量
+     */
+    public void setMaxSize(int maxSize) {
+        synchronized (entries) {
+            this.maxSize = maxSize;
+            trim();
+        }
+    }
+
+    /**
+     * 按最久未使用的顺序淘汰，直到不超过容量，调用方需持有entries的锁
+     */
+    private void trim() {
+        Iterator<Map.Entry<String, V>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            String key = iterator.next().getKey();
+            iterator.remove();
+            evictionCount.incrementAndGet();
+            if (evictionListener != null) {
+                evictionListener.accept(key);
+            }
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(size=" + size() + ", maxSize=" + getMaxSize() + ", hitCount=" + getHitCount()
+                + ", missCount=" + getMissCount() + ", evictionCount=" + getEvictionCount() + ")";
+    }
+}
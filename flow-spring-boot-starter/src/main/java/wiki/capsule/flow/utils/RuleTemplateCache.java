@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.utils;
+
+import java.util.function.Consumer;
+
+/**
+ * 规则表达式编译结果缓存，按表达式文本缓存编译结果（Beetl Program或CompiledRule），超过容量时淘汰最久未使用的表达式
+ *
+ * @param <V> 编译结果类型
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class RuleTemplateCache<V> extends LruCache<V> {
+
+    public RuleTemplateCache(int maxSize) {
+        super(maxSize);
+    }
+
+    /**
+     * @param maxSize          最大缓存表达式数量
+     * @param evictionListener 表达式被淘汰时的回调，在持有缓存锁时调用，不要在其中访问本缓存
+     */
+    public RuleTemplateCache(int maxSize, Consumer<String> evictionListener) {
+        super(maxSize, evictionListener);
+    }
+}
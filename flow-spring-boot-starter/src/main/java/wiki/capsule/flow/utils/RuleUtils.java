@@ -20,12 +20,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.beetl.core.Configuration;
 import org.beetl.core.GroupTemplate;
 import org.beetl.core.Template;
+import org.beetl.core.exception.BeetlException;
 import org.beetl.core.resource.StringTemplateResourceLoader;
+import wiki.capsule.flow.enums.RuleEngine;
+import wiki.capsule.flow.rule.RuleCompiler;
 
 import java.io.IOException;
 
 /**
  * 基于Beetls的规则引擎工具类
+ * 只使用GroupTemplate的公开API，以表达式文本作为StringTemplateResourceLoader的key，编译结果由Beetl缓存；
+ * RuleTemplateCache按LRU记录已编译的表达式，淘汰时通过removeTemplate从Beetl缓存中移除，避免其无限增长
  *
  * @author DiGuoZhiMeng
  * @since 2020-06-14
@@ -33,6 +38,11 @@ import java.io.IOException;
 @Slf4j
 public class RuleUtils {
 
+    private static final int DEFAULT_CACHE_SIZE = 512;
+
+    private static final RuleTemplateCache<Boolean> TEMPLATE_CACHE = new RuleTemplateCache<>(DEFAULT_CACHE_SIZE,
+            el -> getInstance().removeTemplate(el));
+
     private static GroupTemplate instance = null;
 
     private static GroupTemplate getInstance() {
@@ -54,8 +64,87 @@ public class RuleUtils {
     }
 
     public static String render(String el, String key, Object value) {
-        Template template = getInstance().getTemplate(el);
+        Template template = getTemplate(el);
         template.binding(key, value);
         return template.render();
     }
+
+    /**
+     * 按指定的规则引擎对表达式求值
+     *
+     * @param engine 规则引擎
+     * @param el     规则表达式
+     * @param key    表达式中引用实体的变量名
+     * @param value  业务实体
+     * @return 表达式结果
+     */
+    public static String evaluate(RuleEngine engine, String el, String key, Object value) {
+        if (engine == RuleEngine.COMPILED) {
+            return RuleCompiler.compile(el).evaluate(key, value);
+        }
+        return render(el, key, value);
+    }
+
+    /**
+     * 按指定的规则引擎编译表达式并放入对应的缓存，可用于启动时预热
+     *
+     * @param engine 规则引擎
+     * @param el     规则表达式
+     */
+    public static void compile(RuleEngine engine, String el) {
+        if (engine == RuleEngine.COMPILED) {
+            RuleCompiler.compile(el);
+        } else {
+            compile(el);
+        }
+    }
+
+    /**
+     * 编译表达式并放入缓存，可用于启动时预热
+     *
+     * @param el 规则表达式
+     */
+    public static void compile(String el) {
+        getTemplate(el);
+    }
+
+    /**
+     * 检查表达式的语法，Beetl编译失败时不会抛出异常，而是在渲染时才报错，可用于启动时校验FLOW_BASIC中的规则
+     * 使用缓存的编译结果，已预编译的表达式不会重复编译
+     *
+     * @param el 规则表达式
+     * @return 语法错误信息，没有错误时返回null
+     */
+    public static String validate(String el) {
+        BeetlException exception = getTemplate(el).validate();
+        if (exception == null) {
+            return null;
+        }
+        return exception.getMessage() != null ? exception.getMessage() : exception.detailCode;
+    }
+
+    /**
+     * 获取表达式对应的模板，每次返回新的Template实例，编译结果由Beetl缓存
+     * 先取模板再记录到TEMPLATE_CACHE，并发淘汰时最多重新编译一次，不会在Beetl缓存中留下未记录的表达式
+     */
+    private static Template getTemplate(String el) {
+        Template template = getInstance().getTemplate(el);
+        track(el);
+        return template;
+    }
+
+    private static void track(String el) {
+        if (TEMPLATE_CACHE.get(el) == null) {
+            TEMPLATE_CACHE.put(el, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 获取表达式缓存，可用于查看命中、未命中次数或调整容量
+     *
+     * @return RuleTemplateCache
+     */
+    public static RuleTemplateCache<Boolean> getTemplateCache() {
+        return TEMPLATE_CACHE;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.vo;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import wiki.capsule.flow.entity.FlowBasic;
+
+import java.util.List;
+
+/**
+ * 批量处理中单个单据的处理结果
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Data
+@Accessors(chain = true)
+public class FlowBatchItemVo<T> {
+    /**
+     * 单据实体
+     */
+    private T bizEntity;
+
+    /**
+     * 是否处理成功
+     */
+    private boolean success;
+
+    /**
+     * 本次用户处理的所有环节，处理失败时为空
+     */
+    private List<FlowBasic> handledFlows;
+
+    /**
+     * 处理失败时的错误码，非FlowException时为空
+     */
+    private Integer errorCode;
+
+    /**
+     * 处理失败时的错误信息
+     */
+    private String errorMessage;
+
+}
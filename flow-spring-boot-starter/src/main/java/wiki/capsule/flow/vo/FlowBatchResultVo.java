@@ -0,0 +1,47 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.vo;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量处理结果，items与传入的单据列表顺序一致，单个单据失败不影响其他单据
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Data
+@Accessors(chain = true)
+public class FlowBatchResultVo<T> {
+    /**
+     * 每个单据的处理结果
+     */
+    private List<FlowBatchItemVo<T>> items = new ArrayList<>();
+
+    public int getSuccessCount() {
+        return (int) items.stream().filter(FlowBatchItemVo::isSuccess).count();
+    }
+
+    public int getFailureCount() {
+        return items.size() - getSuccessCount();
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.vo;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+import wiki.capsule.flow.entity.FlowLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 审批日志分页结果，查询下一页时将nextCreateTime和nextId作为afterCreateTime和afterId传入
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Data
+@Accessors(chain = true)
+public class FlowLogPageVo {
+    /**
+     * 当前页的审批日志
+     */
+    private List<FlowLog> flowLogs;
+
+    /**
+     * 下一页游标的创建时间，没有更多数据时为空
+     */
+    private LocalDateTime nextCreateTime;
+
+    /**
+     * 下一页游标的日志id，没有更多数据时为空
+     */
+    private Long nextId;
+
+}
@@ -0,0 +1,71 @@
+-- Capsule-Flow V1: 审批流基础表及可选的待办索引表、号段序列表（H2）
+
+CREATE TABLE IF NOT EXISTS flow_basic (
+  ID int NOT NULL AUTO_INCREMENT,
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  PREV_STATUS varchar(100) NOT NULL,
+  PREV_STATUS_ALIAS varchar(100) DEFAULT NULL,
+  ACTION varchar(50) NOT NULL,
+  NEXT_STATUS varchar(10000) NOT NULL,
+  NEXT_STATUS_ALIAS varchar(100) DEFAULT NULL,
+  HANDLE_ROLES varchar(300) DEFAULT NULL,
+  TASK_ORDER int NOT NULL DEFAULT 0,
+  LAST_TASK int NOT NULL DEFAULT 0,
+  DELETED int NOT NULL DEFAULT 0,
+  CREATED_BY varchar(50) DEFAULT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  UPDATED_BY varchar(50) DEFAULT NULL,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+
+CREATE TABLE IF NOT EXISTS flow_log (
+  ID bigint NOT NULL AUTO_INCREMENT,
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  PREV_STATUS varchar(100) NOT NULL,
+  COMMENTS varchar(1000) DEFAULT NULL,
+  ACTION varchar(50) NOT NULL,
+  NEXT_STATUS varchar(100) NOT NULL,
+  ORDER_ID bigint NOT NULL,
+  ROUND_ID bigint NOT NULL,
+  DELETED int NOT NULL DEFAULT 0,
+  CREATED_BY varchar(50) DEFAULT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  UPDATED_BY varchar(50) DEFAULT NULL,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+
+CREATE TABLE IF NOT EXISTS flow_round (
+  ID bigint NOT NULL AUTO_INCREMENT,
+  CHANGE_RECORD varchar(10000) DEFAULT NULL,
+  DELETED int NOT NULL DEFAULT 0,
+  CREATED_BY varchar(50) DEFAULT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  UPDATED_BY varchar(50) DEFAULT NULL,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+
+CREATE TABLE IF NOT EXISTS flow_pending_task (
+  ID bigint NOT NULL AUTO_INCREMENT,
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  ORDER_ID bigint NOT NULL,
+  ROUND_ID bigint DEFAULT NULL,
+  PENDING_STATUS varchar(100) NOT NULL,
+  HANDLE_ROLE varchar(100) NOT NULL,
+  SUBMIT_TASK int NOT NULL DEFAULT 0,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+CREATE INDEX IF NOT EXISTS IDX_FLOW_PENDING_TASK_ROLE ON flow_pending_task (FLOW_NAME, ENTITY_NAME, HANDLE_ROLE, SUBMIT_TASK, ORDER_ID);
+CREATE INDEX IF NOT EXISTS IDX_FLOW_PENDING_TASK_ORDER ON flow_pending_task (ORDER_ID, FLOW_NAME, ENTITY_NAME);
+
+CREATE TABLE IF NOT EXISTS flow_sequence (
+  NAME varchar(64) NOT NULL,
+  NEXT_VALUE bigint NOT NULL,
+  PRIMARY KEY (NAME)
+);
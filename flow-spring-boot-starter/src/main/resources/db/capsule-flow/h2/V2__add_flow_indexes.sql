@@ -0,0 +1,5 @@
+-- Capsule-Flow V2: 审批流查询所需的组合索引（H2）
+
+CREATE INDEX IF NOT EXISTS IDX_FLOW_BASIC_FLOW ON flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION);
+CREATE INDEX IF NOT EXISTS IDX_FLOW_LOG_ROUND ON flow_log (ROUND_ID, ACTION, PREV_STATUS);
+CREATE INDEX IF NOT EXISTS IDX_FLOW_LOG_ORDER ON flow_log (FLOW_NAME, ENTITY_NAME, ORDER_ID, ROUND_ID, CREATE_TIME);
@@ -0,0 +1,21 @@
+-- Capsule-Flow V3: 审批日志归档表，开启capsule.flow.archive.enabled时使用（H2）
+
+CREATE TABLE IF NOT EXISTS flow_log_archive (
+  ID bigint NOT NULL,
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  PREV_STATUS varchar(100) NOT NULL,
+  COMMENTS varchar(1000) DEFAULT NULL,
+  ACTION varchar(50) NOT NULL,
+  NEXT_STATUS varchar(100) NOT NULL,
+  ORDER_ID bigint NOT NULL,
+  ROUND_ID bigint NOT NULL,
+  DELETED int NOT NULL DEFAULT 0,
+  CREATED_BY varchar(50) DEFAULT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  UPDATED_BY varchar(50) DEFAULT NULL,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (ID)
+);
+CREATE INDEX IF NOT EXISTS IDX_FLOW_LOG_ARCHIVE_ORDER ON flow_log_archive (FLOW_NAME, ENTITY_NAME, ORDER_ID, ROUND_ID, CREATE_TIME);
+CREATE INDEX IF NOT EXISTS IDX_FLOW_LOG_ARCHIVE_SCAN ON flow_log (FLOW_NAME, ENTITY_NAME, NEXT_STATUS, CREATE_TIME);
@@ -0,0 +1,9 @@
+-- Capsule-Flow V4: 流程定义版本号表，配置capsule.flow.cache.version-poll-interval时使用（H2）
+
+CREATE TABLE IF NOT EXISTS flow_definition_version (
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  VERSION bigint NOT NULL DEFAULT 0,
+  UPDATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (FLOW_NAME, ENTITY_NAME)
+);
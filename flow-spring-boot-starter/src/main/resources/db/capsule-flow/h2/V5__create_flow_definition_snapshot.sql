@@ -0,0 +1,10 @@
+-- Capsule-Flow V5: 流程定义快照表，开启capsule.flow.cache.versioned时使用（H2）
+
+CREATE TABLE IF NOT EXISTS flow_definition_snapshot (
+  FLOW_NAME varchar(100) NOT NULL,
+  ENTITY_NAME varchar(100) NOT NULL,
+  VERSION bigint NOT NULL,
+  DEFINITION clob NOT NULL,
+  CREATE_TIME timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (FLOW_NAME, ENTITY_NAME, VERSION)
+);
@@ -0,0 +1,86 @@
+-- Capsule-Flow V1: 审批流基础表及可选的待办索引表、号段序列表（MySQL 5.7+）
+
+-- ----------------------------
+-- Table structure for flow_basic
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `flow_basic` (
+  `ID` int(20) NOT NULL AUTO_INCREMENT COMMENT '主键',
+  `FLOW_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '流程名称',
+  `ENTITY_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '实体名称',
+  `PREV_STATUS` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '上一个状态',
+  `PREV_STATUS_ALIAS` varchar(100) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '上一个状态别名',
+  `ACTION` varchar(50) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '审批动作：提交、通过、驳回等',
+  `NEXT_STATUS` varchar(10000) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '下一个状态',
+  `NEXT_STATUS_ALIAS` varchar(100) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '下一个状态别名',
+  `HANDLE_ROLES` varchar(300) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '审批角色列表，json数组',
+  `TASK_ORDER` int(11) NOT NULL DEFAULT '0' COMMENT '是否是流程起点：1-是起始节点；大于1表示正向审批通过操作；0表示驳回或通过后重新提交操作；小于0表示逆向驳回操作',
+  `LAST_TASK` int(11) NOT NULL DEFAULT '0' COMMENT '是否是流程终点：0-表示非流程最终节点；1表示最终审批通过节点；-1表示最终驳回的节点',
+  `DELETED` int(11) NOT NULL DEFAULT '0' COMMENT '逻辑删除，0：未删除，1：已删除',
+  `CREATED_BY` varchar(50) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '创建人',
+  `CREATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `UPDATED_BY` varchar(50) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '更新人',
+  `UPDATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '修改时间',
+  PRIMARY KEY (`ID`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='流程基础信息表';
+
+-- ----------------------------
+-- Table structure for flow_log
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `flow_log` (
+  `ID` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键',
+  `FLOW_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '流程名称',
+  `ENTITY_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '实体名称',
+  `PREV_STATUS` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '上一个状态',
+  `COMMENTS` varchar(1000) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '审批意见',
+  `ACTION` varchar(50) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '审批动作：提交、通过、驳回等',
+  `NEXT_STATUS` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '下一个状态',
+  `ORDER_ID` bigint(20) NOT NULL COMMENT '单据主键id',
+  `ROUND_ID` bigint(20) NOT NULL COMMENT '回合ID',
+  `DELETED` int(11) NOT NULL DEFAULT '0' COMMENT '逻辑删除，0：未删除，1：已删除',
+  `CREATED_BY` varchar(50) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '创建人',
+  `CREATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `UPDATED_BY` varchar(50) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '更新人',
+  `UPDATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '修改时间',
+  PRIMARY KEY (`ID`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='流程审批历史日志表';
+
+-- ----------------------------
+-- Table structure for flow_round
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `flow_round` (
+  `ID` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键',
+  `CHANGE_RECORD` json DEFAULT NULL COMMENT '单据字段值审批前后变动记录',
+  `DELETED` int(11) NOT NULL DEFAULT '0' COMMENT '逻辑删除，0：未删除，1：已删除',
+  `CREATED_BY` varchar(50) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '创建人',
+  `CREATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `UPDATED_BY` varchar(50) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '更新人',
+  `UPDATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '修改时间',
+  PRIMARY KEY (`ID`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='流程审批回合及数据变动记录表';
+
+-- ----------------------------
+-- Table structure for flow_pending_task
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `flow_pending_task` (
+  `ID` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键',
+  `FLOW_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '流程名称',
+  `ENTITY_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '实体名称',
+  `ORDER_ID` bigint(20) NOT NULL COMMENT '单据id',
+  `ROUND_ID` bigint(20) DEFAULT NULL COMMENT '审批回合id',
+  `PENDING_STATUS` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '待处理环节',
+  `HANDLE_ROLE` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '可处理角色',
+  `SUBMIT_TASK` int(11) NOT NULL DEFAULT '0' COMMENT '1：待提交，0：待审批',
+  `CREATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`ID`),
+  KEY `IDX_FLOW_PENDING_TASK_ROLE` (`FLOW_NAME`,`ENTITY_NAME`,`HANDLE_ROLE`,`SUBMIT_TASK`,`ORDER_ID`),
+  KEY `IDX_FLOW_PENDING_TASK_ORDER` (`ORDER_ID`,`FLOW_NAME`,`ENTITY_NAME`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='待办索引表';
+
+-- ----------------------------
+-- Table structure for flow_sequence
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `flow_sequence` (
+  `NAME` varchar(64) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '序列名称',
+  `NEXT_VALUE` bigint(20) NOT NULL COMMENT '下一个未分配的值',
+  PRIMARY KEY (`NAME`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='号段序列表';
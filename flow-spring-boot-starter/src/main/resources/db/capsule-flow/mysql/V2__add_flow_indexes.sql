@@ -0,0 +1,10 @@
+-- Capsule-Flow V2: 审批流查询所需的组合索引（MySQL 5.7+）
+
+-- 加载流程定义：FLOW_NAME + ENTITY_NAME，按PREV_STATUS + ACTION查找审批环节
+CREATE INDEX `IDX_FLOW_BASIC_FLOW` ON `flow_basic` (`FLOW_NAME`, `ENTITY_NAME`, `PREV_STATUS`, `ACTION`);
+
+-- 并签判断已处理环节：ROUND_ID IN (...) AND ACTION = ? AND PREV_STATUS IN (...)，只读取ROUND_ID、PREV_STATUS，索引覆盖
+CREATE INDEX `IDX_FLOW_LOG_ROUND` ON `flow_log` (`ROUND_ID`, `ACTION`, `PREV_STATUS`);
+
+-- 审批历史：FLOW_NAME + ENTITY_NAME + ORDER_ID [+ ROUND_ID]，按CREATE_TIME排序及游标分页
+CREATE INDEX `IDX_FLOW_LOG_ORDER` ON `flow_log` (`FLOW_NAME`, `ENTITY_NAME`, `ORDER_ID`, `ROUND_ID`, `CREATE_TIME`);
@@ -0,0 +1,27 @@
+-- Capsule-Flow V3: 审批日志归档表，开启capsule.flow.archive.enabled时使用（MySQL 5.7+）
+-- 已结束且超过min-age的回合整体从flow_log移动到此表，ID沿用flow_log中的值；数据量很大时可以再按CREATE_TIME对此表做RANGE分区
+
+-- ----------------------------
+-- Table structure for flow_log_archive
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `flow_log_archive` (
+  `ID` bigint(20) NOT NULL COMMENT '主键，与flow_log中的ID一致',
+  `FLOW_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '流程名称',
+  `ENTITY_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '实体名称',
+  `PREV_STATUS` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '上一个状态',
+  `COMMENTS` varchar(1000) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '审批意见',
+  `ACTION` varchar(50) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '审批动作：提交、通过、驳回等',
+  `NEXT_STATUS` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '下一个状态',
+  `ORDER_ID` bigint(20) NOT NULL COMMENT '单据主键id',
+  `ROUND_ID` bigint(20) NOT NULL COMMENT '回合ID',
+  `DELETED` int(11) NOT NULL DEFAULT '0' COMMENT '逻辑删除，0：未删除，1：已删除',
+  `CREATED_BY` varchar(50) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '创建人',
+  `CREATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `UPDATED_BY` varchar(50) COLLATE utf8mb4_unicode_ci DEFAULT NULL COMMENT '更新人',
+  `UPDATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '修改时间',
+  PRIMARY KEY (`ID`),
+  KEY `IDX_FLOW_LOG_ARCHIVE_ORDER` (`FLOW_NAME`,`ENTITY_NAME`,`ORDER_ID`,`ROUND_ID`,`CREATE_TIME`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='流程审批历史日志归档表';
+
+-- 归档任务查找已结束的回合：FLOW_NAME + ENTITY_NAME + NEXT_STATUS IN (...) + CREATE_TIME < ?
+CREATE INDEX `IDX_FLOW_LOG_ARCHIVE_SCAN` ON `flow_log` (`FLOW_NAME`, `ENTITY_NAME`, `NEXT_STATUS`, `CREATE_TIME`);
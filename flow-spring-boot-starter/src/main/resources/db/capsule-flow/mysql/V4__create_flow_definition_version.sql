@@ -0,0 +1,12 @@
+-- Capsule-Flow V4: 流程定义版本号表，配置capsule.flow.cache.version-poll-interval时使用（MySQL 5.7+）
+
+-- ----------------------------
+-- Table structure for flow_definition_version
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `flow_definition_version` (
+  `FLOW_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '流程名称',
+  `ENTITY_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '实体名称',
+  `VERSION` bigint(20) NOT NULL DEFAULT '0' COMMENT '版本号，修改FLOW_BASIC后递增',
+  `UPDATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '修改时间',
+  PRIMARY KEY (`FLOW_NAME`, `ENTITY_NAME`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='流程定义版本号表';
@@ -0,0 +1,13 @@
+-- Capsule-Flow V5: 流程定义快照表，开启capsule.flow.cache.versioned时使用（MySQL 5.7+）
+
+-- ----------------------------
+-- Table structure for flow_definition_snapshot
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `flow_definition_snapshot` (
+  `FLOW_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '流程名称',
+  `ENTITY_NAME` varchar(100) COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '实体名称',
+  `VERSION` bigint(20) NOT NULL COMMENT '流程定义版本号，与flow_definition_version一致',
+  `DEFINITION` mediumtext COLLATE utf8mb4_unicode_ci NOT NULL COMMENT '该版本FLOW_BASIC记录的JSON数组',
+  `CREATE_TIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`FLOW_NAME`, `ENTITY_NAME`, `VERSION`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='流程定义快照表';
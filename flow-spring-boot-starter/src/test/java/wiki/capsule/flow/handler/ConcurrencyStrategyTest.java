@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.handler;
+
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import wiki.capsule.flow.testing.FlowTestApplication;
+import wiki.capsule.flow.testing.TestAndHandler;
+import wiki.capsule.flow.testing.TestOrder;
+import wiki.capsule.flow.testing.mapper.TestOrderMapper;
+import wiki.capsule.flow.vo.FlowBatchItemVo;
+
+import java.util.Collections;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <pre>
+ * 两个线程同时处理同一张并签（A&&B）单据的不同环节，每个线程各自读取单据，
+ * 校验LOCK和OPTIMISTIC策略下（包括其中一个线程调用processBatch时）并签只完成一次、每个环节只有一条审批日志
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class ConcurrencyStrategyTest {
+
+    private static final int DOCUMENTS = 20;
+
+    @Test
+    public void lockCompletesJoinOnce() throws Exception {
+        assertJoinCompletesOnce(false, "capsule.flow.concurrency.strategy=LOCK");
+    }
+
+    @Test
+    public void optimisticCompletesJoinOnce() throws Exception {
+        assertJoinCompletesOnce(false, "capsule.flow.concurrency.strategy=OPTIMISTIC");
+    }
+
+    @Test
+    public void lockBatchCompletesJoinOnce() throws Exception {
+        assertJoinCompletesOnce(true, "capsule.flow.concurrency.strategy=LOCK");
+    }
+
+    @Test
+    public void lockBatchInUnitOfWorkCompletesJoinOnce() throws Exception {
+        assertJoinCompletesOnce(true, "capsule.flow.concurrency.strategy=LOCK", "capsule.flow.unit-of-work.enabled=true");
+    }
+
+    @Test
+    public void optimisticBatchCompletesJoinOnce() throws Exception {
+        assertJoinCompletesOnce(true, "capsule.flow.concurrency.strategy=OPTIMISTIC");
+    }
+
+    /**
+     * @param batch      为true时处理环节A的线程调用processBatch
+     * @param properties 并发控制及工作单元配置
+     */
+    private void assertJoinCompletesOnce(boolean batch, String... properties) throws Exception {
+        try (ConfigurableApplicationContext context = FlowTestApplication.run(properties)) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            TestOrderMapper testOrderMapper = context.getBean(TestOrderMapper.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                for (long id = 1; id <= DOCUMENTS; id++) {
+                    handler.submitNew(id);
+                    CyclicBarrier barrier = new CyclicBarrier(2);
+                    Future<?> approveA = executor.submit(approve(handler, testOrderMapper, id, "roleA", barrier, batch));
+                    Future<?> approveB = executor.submit(approve(handler, testOrderMapper, id, "roleB", barrier, false));
+                    approveA.get(30, TimeUnit.SECONDS);
+                    approveB.get(30, TimeUnit.SECONDS);
+                    assertEquals(TestAndHandler.APPROVED, testOrderMapper.selectById(id).getApprovalStatus());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(DOCUMENTS, handler.getCompletions());
+            assertEquals(Integer.valueOf(DOCUMENTS * 2), jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM flow_log WHERE FLOW_NAME = 'TEST_AND_FLOW' AND ACTION = 'Approve'", Integer.class));
+        }
+    }
+
+    /**
+     * 模拟一次独立的请求：各自读取单据，等待另一个线程也读取完成后同时处理
+     */
+    private static Runnable approve(TestAndHandler handler, TestOrderMapper testOrderMapper, Long id, String user, CyclicBarrier barrier,
+                                    boolean batch) {
+        return () -> {
+            TestOrder order = testOrderMapper.selectById(id);
+            try {
+                barrier.await(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            if (!batch) {
+                handler.process(order, "Approve", "approve", user, false, false);
+                return;
+            }
+            FlowBatchItemVo<TestOrder> item = handler.processBatch(Collections.singletonList(order), "Approve", "approve", user).getItems().get(0);
+            if (!item.isSuccess()) {
+                throw new IllegalStateException(item.getErrorMessage());
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.handler;
+
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import wiki.capsule.flow.enums.TodoEnum;
+import wiki.capsule.flow.testing.FlowTestApplication;
+import wiki.capsule.flow.testing.TestAndHandler;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <pre>
+ * 在修改FLOW_BASIC的事务中调用refreshFlowDefinition()：提交前版本号不变，其他线程仍读到旧定义；
+ * 提交后版本号递增，缓存中是修改后的定义
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class FlowDefinitionRefreshTest {
+
+    private static final Set<String> ROLE_C = Collections.singleton("roleC");
+
+    @Test
+    public void refreshInTransactionTakesEffectAfterCommit() throws Exception {
+        try (ConfigurableApplicationContext context = FlowTestApplication.run("capsule.flow.cache.versioned=true")) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                transactionTemplate.execute(status -> {
+                    jdbcTemplate.update("UPDATE flow_basic SET HANDLE_ROLES = '[\"roleC\"]' WHERE FLOW_NAME = 'TEST_AND_FLOW' "
+                            + "AND PREV_STATUS = 'A' AND ACTION = 'Approve'");
+                    handler.refreshFlowDefinition();
+                    try {
+                        Set<String> todo = executor.submit(() -> handler.getTodoStatus(TodoEnum.ONLY_PENDING_APPROVAL, ROLE_C))
+                                .get(10, TimeUnit.SECONDS);
+                        assertEquals(Collections.emptySet(), todo);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    assertEquals(0L, version(jdbcTemplate));
+                    return null;
+                });
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(1L, version(jdbcTemplate));
+            assertEquals(Collections.singleton("A"), handler.getTodoStatus(TodoEnum.ONLY_PENDING_APPROVAL, ROLE_C));
+        }
+    }
+
+    private static long version(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(VERSION), 0) FROM flow_definition_version "
+                + "WHERE FLOW_NAME = 'TEST_AND_FLOW' AND ENTITY_NAME = 'TEST_ORDER'", Long.class);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.handler;
+
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import wiki.capsule.flow.testing.FlowTestApplication;
+import wiki.capsule.flow.testing.TestAndHandler;
+import wiki.capsule.flow.testing.TestOrder;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <pre>
+ * 开启归档后streamHistoryFlowLog按时间归并flow_log和flow_log_archive，两个表中已逻辑删除的日志都不返回
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class HistoryFlowLogStreamTest {
+
+    private static final String INSERT = "INSERT INTO %s (ID, FLOW_NAME, ENTITY_NAME, PREV_STATUS, COMMENTS, ACTION, NEXT_STATUS, ORDER_ID, "
+            + "ROUND_ID, DELETED, CREATED_BY, CREATE_TIME) VALUES (?, 'TEST_AND_FLOW', 'TEST_ORDER', 'A', ?, 'Approve', 'B', 1, 0, ?, 'role1', ?)";
+
+    @Test
+    public void streamMergesArchiveAndSkipsDeleted() {
+        try (ConfigurableApplicationContext context = FlowTestApplication.run(
+                "capsule.flow.archive.enabled=true", "capsule.flow.archive.job-enabled=false")) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            TestOrder order = handler.submitNew(1L);
+            insert(jdbcTemplate, "flow_log_archive", 1001L, "archive-1", 0, "2020-01-01 10:00:00");
+            insert(jdbcTemplate, "flow_log", 2002L, "hot-1", 0, "2020-01-01 10:01:00");
+            insert(jdbcTemplate, "flow_log_archive", 1003L, "archive-2", 0, "2020-01-01 10:02:00");
+            insert(jdbcTemplate, "flow_log", 2004L, "deleted", 1, "2020-01-01 10:03:00");
+            insert(jdbcTemplate, "flow_log_archive", 1005L, "deleted", 1, "2020-01-01 10:04:00");
+
+            assertEquals(Arrays.asList("archive-1", "hot-1", "archive-2", "submit"), stream(handler, order, true));
+            assertEquals(Arrays.asList("submit", "archive-2", "hot-1", "archive-1"), stream(handler, order, false));
+        }
+    }
+
+    private static List<String> stream(TestAndHandler handler, TestOrder order, boolean ascending) {
+        List<String> comments = new ArrayList<>();
+        handler.streamHistoryFlowLog(order, false, ascending, flowLog -> comments.add(flowLog.getComments()));
+        return comments;
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, String table, Long id, String comments, int deleted, String createTime) {
+        jdbcTemplate.update(String.format(INSERT, table), id, comments, deleted, Timestamp.valueOf(createTime));
+    }
+}
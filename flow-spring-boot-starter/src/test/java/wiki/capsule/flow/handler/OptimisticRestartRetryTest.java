@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.handler;
+
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import wiki.capsule.flow.testing.FlowTestApplication;
+import wiki.capsule.flow.testing.TestAndHandler;
+import wiki.capsule.flow.testing.TestOrder;
+import wiki.capsule.flow.testing.mapper.TestOrderMapper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <pre>
+ * OPTIMISTIC策略、未开启工作单元时，开启新回合的提交因版本冲突重试，重试沿用第一次尝试创建的回合，不留下多余的FLOW_ROUND
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class OptimisticRestartRetryTest {
+
+    private static final Long ID = 1L;
+
+    @Test
+    public void retryReusesNewRound() {
+        try (ConfigurableApplicationContext context = FlowTestApplication.run("capsule.flow.concurrency.strategy=OPTIMISTIC")) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            TestOrderMapper testOrderMapper = context.getBean(TestOrderMapper.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            TestOrder order = new TestOrder().setId(ID).setType("A").setVersion(0);
+            handler.initApprovalStatus(order);
+            testOrderMapper.insert(order);
+            // 读取单据后由另一个请求更新了单据，提交时第一次尝试版本冲突
+            jdbcTemplate.update("UPDATE test_order SET version = version + 1 WHERE id = ?", ID);
+
+            handler.process(order, "Submit", "submit", "role1", true, true);
+
+            assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM flow_round", Integer.class));
+            Long roundId = jdbcTemplate.queryForObject("SELECT ID FROM flow_round", Long.class);
+            TestOrder saved = testOrderMapper.selectById(ID);
+            assertEquals("A&&B", saved.getApprovalStatus());
+            assertEquals(roundId, saved.getAroundId());
+            assertEquals(roundId, jdbcTemplate.queryForObject("SELECT ROUND_ID FROM flow_log WHERE ACTION = 'Submit'", Long.class));
+        }
+    }
+}
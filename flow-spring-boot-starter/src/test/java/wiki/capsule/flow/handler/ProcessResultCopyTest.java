@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.handler;
+
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import wiki.capsule.flow.entity.FlowBasic;
+import wiki.capsule.flow.testing.FlowTestApplication;
+import wiki.capsule.flow.testing.TestAndHandler;
+import wiki.capsule.flow.testing.TestOrder;
+import wiki.capsule.flow.testing.mapper.TestOrderMapper;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <pre>
+ * process()返回的审批环节是副本，调用方修改后不影响缓存的流程定义
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class ProcessResultCopyTest {
+
+    @Test
+    public void modifyingReturnedFlowsKeepsDefinition() {
+        try (ConfigurableApplicationContext context = FlowTestApplication.run()) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            TestOrder first = new TestOrder().setId(1L).setType("A").setVersion(0);
+            handler.initApprovalStatus(first);
+            context.getBean(TestOrderMapper.class).insert(first);
+            List<FlowBasic> handled = handler.process(first, "Submit", "submit", "role1", true, true);
+            assertEquals(1, handled.size());
+            handled.get(0).setNextStatus("Broken");
+
+            assertEquals("A&&B", handler.submitNew(2L).getApprovalStatus());
+        }
+    }
+}
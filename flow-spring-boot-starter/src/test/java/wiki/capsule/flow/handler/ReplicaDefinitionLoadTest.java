@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.handler;
+
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import wiki.capsule.flow.enums.TodoEnum;
+import wiki.capsule.flow.testing.FlowTestApplication;
+import wiki.capsule.flow.testing.TestAndHandler;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <pre>
+ * 开启只读副本时，由只读查询触发的流程定义加载、版本号读取和快照写入都使用主库
+ * 测试中的副本是一个没有任何表的H2内存库，读到副本即报错
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class ReplicaDefinitionLoadTest {
+
+    @Test
+    public void definitionLoadedByReadQueryUsesPrimary() {
+        try (ConfigurableApplicationContext context = FlowTestApplication.run(
+                "capsule.flow.replica.enabled=true",
+                "capsule.flow.replica.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "capsule.flow.replica.username=sa",
+                "capsule.flow.replica.driver-class-name=org.h2.Driver",
+                "capsule.flow.cache.versioned=true",
+                "capsule.flow.warm-up.enabled=false")) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+            assertEquals(new HashSet<>(Arrays.asList("A", "B")), handler.getTodoStatus(TodoEnum.ONLY_PENDING_APPROVAL, null));
+            assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM flow_definition_snapshot "
+                    + "WHERE FLOW_NAME = 'TEST_AND_FLOW' AND ENTITY_NAME = 'TEST_ORDER'", Integer.class));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.handler;
+
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import wiki.capsule.flow.enums.ConcurrencyStrategy;
+import wiki.capsule.flow.exception.FlowConflictException;
+import wiki.capsule.flow.testing.FlowTestApplication;
+import wiki.capsule.flow.testing.TestAndHandler;
+import wiki.capsule.flow.testing.TestOrder;
+import wiki.capsule.flow.testing.mapper.TestOrderMapper;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * <pre>
+ * 开启工作单元后在调用方事务中调用process()：
+ * OPTIMISTIC冲突时不在外层事务中重试，而是把FlowConflictException抛给调用方；LOCK策略的锁在外层事务结束后才释放
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class UnitOfWorkTransactionTest {
+
+    private static final Long ID = 1L;
+
+    @Test
+    public void optimisticConflictInCallerTransactionIsRethrown() {
+        try (ConfigurableApplicationContext context = run(ConcurrencyStrategy.OPTIMISTIC)) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            TestOrderMapper testOrderMapper = context.getBean(TestOrderMapper.class);
+            TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+            handler.submitNew(ID);
+            TestOrder stale = staleOrder(context);
+            try {
+                transactionTemplate.execute(status -> handler.process(stale, "Approve", "approve", "roleA", false, false));
+                fail("Conflict in caller transaction should be rethrown");
+            } catch (FlowConflictException e) {
+                assertEquals(0, approveLogs(context));
+            }
+            // 调用方回滚后重新读取单据再次调用即可成功
+            transactionTemplate.execute(status -> handler.process(testOrderMapper.selectById(ID), "Approve", "approve", "roleA", false, false));
+            assertEquals(1, approveLogs(context));
+        }
+    }
+
+    @Test
+    public void optimisticConflictWithoutCallerTransactionIsRetried() {
+        try (ConfigurableApplicationContext context = run(ConcurrencyStrategy.OPTIMISTIC)) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            handler.submitNew(ID);
+            handler.process(staleOrder(context), "Approve", "approve", "roleA", false, false);
+            assertEquals(1, approveLogs(context));
+        }
+    }
+
+    @Test
+    public void lockIsHeldUntilCallerTransactionCompletes() throws Exception {
+        try (ConfigurableApplicationContext context = run(ConcurrencyStrategy.LOCK)) {
+            TestAndHandler handler = context.getBean(TestAndHandler.class);
+            TestOrderMapper testOrderMapper = context.getBean(TestOrderMapper.class);
+            TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+            handler.submitNew(ID);
+            CountDownLatch processed = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<?> approveA = executor.submit(() -> transactionTemplate.execute(status -> {
+                    handler.process(testOrderMapper.selectById(ID), "Approve", "approve", "roleA", false, false);
+                    processed.countDown();
+                    sleep(300);
+                    return null;
+                }));
+                Future<?> approveB = executor.submit(() -> {
+                    await(processed);
+                    handler.process(testOrderMapper.selectById(ID), "Approve", "approve", "roleB", false, false);
+                });
+                approveA.get(30, TimeUnit.SECONDS);
+                approveB.get(30, TimeUnit.SECONDS);
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(TestAndHandler.APPROVED, testOrderMapper.selectById(ID).getApprovalStatus());
+            assertEquals(1, handler.getCompletions());
+            assertEquals(2, approveLogs(context));
+        }
+    }
+
+    private static ConfigurableApplicationContext run(ConcurrencyStrategy strategy) {
+        ConfigurableApplicationContext context = FlowTestApplication.run(
+                "capsule.flow.concurrency.strategy=" + strategy, "capsule.flow.unit-of-work.enabled=true");
+        context.getBean(TestAndHandler.class).setUseEntityMapper(true);
+        return context;
+    }
+
+    /**
+     * 读取单据后由另一个请求更新了单据，读取到的VERSION已过期
+     */
+    private static TestOrder staleOrder(ConfigurableApplicationContext context) {
+        TestOrder order = context.getBean(TestOrderMapper.class).selectById(ID);
+        context.getBean(JdbcTemplate.class).update("UPDATE test_order SET version = version + 1 WHERE id = ?", ID);
+        return order;
+    }
+
+    private static int approveLogs(ConfigurableApplicationContext context) {
+        return context.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT COUNT(*) FROM flow_log WHERE FLOW_NAME = 'TEST_AND_FLOW' AND ACTION = 'Approve'", Integer.class);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.rule;
+
+import org.junit.Test;
+import wiki.capsule.flow.enums.RuleEngine;
+import wiki.capsule.flow.utils.RuleUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <pre>
+ * 每种支持的写法分别用BEETL和COMPILED引擎对同一组实体求值，结果必须相同；
+ * 实体覆盖Integer、Long、BigDecimal、Double、Float、String和null等取值，包括求值出错的情况（输出与Beetl相同，或抛出相同类型的异常）
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class RuleEngineEquivalenceTest {
+
+    private static final List<String> RULES = Arrays.asList(
+            // if/else写法
+            "<% if(vo.amount > 1000){print('CFO');} else {print('Manager');} %>",
+            "<% if (vo.type == 'A') { print(\"A\"); } else if (vo.type == 'B') { print(\"B\"); } else { print(\"C\"); } %>",
+            "<% if (vo.amount >= 10) print('A'); else print('B'); %>",
+            "<% if (vo.flag) { print('Y'); } %>",
+            "<% if (!vo.flag) { print('N'); } else { print('Y'); } %>",
+            "<% if (vo.amount == null) { print('Empty'); } else if (vo.amount < 0) { print('Negative'); } else { print('Positive'); } %>",
+            "<% if (vo.amount != 10 && vo.type != null) { print('X'); } else { print('Y'); } %>",
+            "<% if (vo.type == 'A' || vo.amount <= 5) { if (vo.flag == true) { print('AA'); } else { print('AB'); } } %>",
+            "<% print('Head'); if (vo.amount > 5) { print('More'); } print('Tail'); %>",
+            "<% ; if (vo.child.amount > 1) { print('Child'); } else { print('NoChild'); } %>",
+            // print写法和三元表达式
+            "<% print(vo.amount); %>",
+            "<% print(vo.type); %>",
+            "<% print(vo.amount > 5 ? 'Big' : 'Small'); %>",
+            "<% print(vo.type == 'A' ? 'TypeA' : vo.type == 'B' ? 'TypeB' : 'Other'); %>",
+            "<% print(vo.flag ? 'Y' : 'N'); %>",
+            "<% print(vo.amount == 10); %>",
+            "<% print(vo.amount != null); %>",
+            "<% print(vo.type > 'A'); %>",
+            // 算术运算
+            "<% print(vo.amount / 3); %>",
+            "<% print(vo.amount / vo.other); %>",
+            "<% print(vo.amount % 3); %>",
+            "<% print(vo.amount + 1); %>",
+            "<% print(vo.amount + vo.other); %>",
+            "<% print(vo.amount - 2.5); %>",
+            "<% print(vo.amount * vo.other); %>",
+            "<% print(-vo.amount); %>",
+            "<% print((vo.amount + 1) * 2 > 20); %>",
+            "<% print(vo.type + '-' + vo.amount); %>",
+            "<% print(0.1 + 0.2); %>",
+            "<% print(2147483647 + 1); %>",
+            "<% print(10000000000 + vo.amount); %>",
+            "<% print(\"quote\\\"d\" + 'tab\\t'); %>",
+            "<% if (vo.amount / 3 > 3) { print('Over'); } else { print('Under'); } %>",
+            "<% if (true && !false) { print(null); } %>");
+
+    @Test
+    public void compiledRulesMatchBeetl() {
+        List<Object> entities = entities();
+        for (String rule : RULES) {
+            assertTrue(rule, RuleCompiler.isCompilable(rule));
+            for (Object entity : entities) {
+                assertEquals(rule + " with " + entity, outcome(RuleEngine.BEETL, rule, entity), outcome(RuleEngine.COMPILED, rule, entity));
+            }
+        }
+    }
+
+    @Test
+    public void formsBeetlRejectsAreNotCompiled() {
+        assertFalse(RuleCompiler.isCompilable("<% vo.amount > 5 ? 'A' : 'B' %>"));
+        assertFalse(RuleCompiler.isCompilable("<% %>"));
+        assertFalse(RuleCompiler.isCompilable("<% print('A') %>"));
+        assertFalse(RuleCompiler.isCompilable("<% if (true) { print('A') } %>"));
+        assertFalse(RuleCompiler.isCompilable("<% var a = 1; print(a); %>"));
+        assertFalse(RuleCompiler.isCompilable("<% print(vo.type.length()); %>"));
+    }
+
+    /**
+     * 求值结果，Beetl对部分运算错误（如BigDecimal除以0）直接抛出异常，此时比较异常类型
+     */
+    private static String outcome(RuleEngine engine, String rule, Object entity) {
+        try {
+            return RuleUtils.evaluate(engine, rule, "vo", entity);
+        } catch (RuntimeException e) {
+            return "threw " + e.getClass().getName();
+        }
+    }
+
+    private static List<Object> entities() {
+        List<Object> amounts = Arrays.asList(null, 0, 3, 10, -4, 2147483647, 10L, new BigDecimal("10"), new BigDecimal("10.5"),
+                10.5d, 1.5f, "x");
+        List<Object> entities = new ArrayList<>();
+        for (Object amount : amounts) {
+            for (String type : Arrays.asList(null, "A", "B")) {
+                entities.add(new RuleVo(amount, 3, type, null, null));
+            }
+            entities.add(new RuleVo(amount, 0, "A", true, new RuleVo(amount, null, null, null, null)));
+            entities.add(new RuleVo(amount, new BigDecimal("2.5"), "C", false, null));
+            entities.add(new RuleVo(amount, 2.5d, "A", "yes", null));
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("amount", 1200);
+        map.put("type", "B");
+        map.put("flag", false);
+        map.put("child", Collections.singletonMap("amount", 2));
+        entities.add(map);
+        return entities;
+    }
+
+    /**
+     * 规则中引用的实体，字段类型不固定，用于覆盖不同类型的取值
+     */
+    public static class RuleVo {
+
+        private final Object amount;
+
+        private final Object other;
+
+        private final String type;
+
+        private final Object flag;
+
+        private final RuleVo child;
+
+        RuleVo(Object amount, Object other, String type, Object flag, RuleVo child) {
+            this.amount = amount;
+            this.other = other;
+            this.type = type;
+            this.flag = flag;
+            this.child = child;
+        }
+
+        public Object getAmount() {
+            return amount;
+        }
+
+        public Object getOther() {
+            return other;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Object getFlag() {
+            return flag;
+        }
+
+        public RuleVo getChild() {
+            return child;
+        }
+
+        @Override
+        public String toString() {
+            return "RuleVo(amount=" + describe(amount) + ", other=" + describe(other) + ", type=" + type
+                    + ", flag=" + describe(flag) + ", child=" + child + ")";
+        }
+
+        private static String describe(Object value) {
+            return value == null ? "null" : value + ":" + value.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.testing;
+
+import com.baomidou.mybatisplus.extension.plugins.OptimisticLockerInterceptor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import java.util.UUID;
+
+/**
+ * <pre>
+ * 测试用的Spring Boot应用，每次启动使用一个独立的H2内存库，执行db/capsule-flow/h2中的建表脚本及test-schema.sql、test-data.sql
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@SpringBootApplication
+public class FlowTestApplication {
+
+    /**
+     * TestOrder的VERSION字段按乐观锁更新，updateById更新行数为0表示并发冲突
+     */
+    @Bean
+    public OptimisticLockerInterceptor optimisticLockerInterceptor() {
+        return new OptimisticLockerInterceptor();
+    }
+
+    /**
+     * 启动一个新的应用上下文
+     *
+     * @param properties 额外的配置，如capsule.flow.concurrency.strategy=LOCK
+     * @return 应用上下文，使用完后需要关闭
+     */
+    public static ConfigurableApplicationContext run(String... properties) {
+        return new SpringApplicationBuilder(FlowTestApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1")
+                .properties(properties)
+                .run();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.testing;
+
+import com.alibaba.fastjson.JSONArray;
+import org.springframework.stereotype.Component;
+import wiki.capsule.flow.entity.FlowBasic;
+import wiki.capsule.flow.exception.FlowConflictException;
+import wiki.capsule.flow.handler.AbstractFlowHandler;
+import wiki.capsule.flow.testing.mapper.TestOrderMapper;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <pre>
+ * 并签测试流程：Pending Submit -> A&&B -> Approved，用户名即角色名
+ * afterProcess按VERSION乐观锁更新单据，更新行数为0时抛出FlowConflictException；
+ * 设置useEntityMapper后改为由工作单元通过getEntityMapper批量更新
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Component
+public class TestAndHandler extends AbstractFlowHandler<TestOrder> {
+
+    public static final String APPROVED = "Approved";
+
+    @Resource
+    private TestOrderMapper testOrderMapper;
+
+    private final AtomicInteger completions = new AtomicInteger();
+
+    private volatile boolean useEntityMapper;
+
+    /**
+     * 创建单据并提交，进入A&&B并签状态
+     *
+     * @param id 单据ID
+     * @return 提交后的单据
+     */
+    public TestOrder submitNew(Long id) {
+        TestOrder order = new TestOrder().setId(id).setType("A").setVersion(0);
+        initApprovalStatus(order);
+        testOrderMapper.insert(order);
+        process(order, "Submit", "submit", "role1", true, true);
+        return order;
+    }
+
+    @Override
+    protected List<FlowBasic> authPermission(List<FlowBasic> currentFlows, String user) {
+        List<FlowBasic> canHandledFlows = new ArrayList<>();
+        for (FlowBasic flowBasic : currentFlows) {
+            if (JSONArray.parseArray(flowBasic.getHandleRoles()).contains(user)) {
+                canHandledFlows.add(flowBasic);
+            }
+        }
+        return canHandledFlows;
+    }
+
+    @Override
+    protected void afterProcess(TestOrder order) {
+        if (!useEntityMapper && testOrderMapper.updateById(order) == 0) {
+            throw new FlowConflictException(order.getId());
+        }
+        if (APPROVED.equals(order.getApprovalStatus())) {
+            completions.incrementAndGet();
+        }
+    }
+
+    @Override
+    protected TestOrder reloadEntity(TestOrder order) {
+        return testOrderMapper.selectById(order.getId());
+    }
+
+    @Override
+    protected Class<TestOrderMapper> getEntityMapper() {
+        return useEntityMapper ? TestOrderMapper.class : null;
+    }
+
+    @Override
+    public String getVersionField() {
+        return "version";
+    }
+
+    @Override
+    protected String getFlowName() {
+        return "TEST_AND_FLOW";
+    }
+
+    @Override
+    protected String getEntityName() {
+        return "TEST_ORDER";
+    }
+
+    /**
+     * @return afterProcess中单据流转到Approved的次数
+     */
+    public int getCompletions() {
+        return completions.get();
+    }
+
+    public void setUseEntityMapper(boolean useEntityMapper) {
+        this.useEntityMapper = useEntityMapper;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.testing;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.annotation.Version;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * <pre>
+ * 测试单据，保存在test_order表中，VERSION为乐观锁字段
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+@Data
+@Accessors(chain = true)
+@TableName("test_order")
+public class TestOrder {
+
+    private Long id;
+
+    private String type;
+
+    private BigDecimal amount;
+
+    private Long aroundId;
+
+    private String approvalStatus;
+
+    private String approvalStatusJson;
+
+    @Version
+    private Integer version;
+
+    private String lastSubmitMessage;
+
+    private String lastSubmitBy;
+
+    private LocalDateTime lastSubmitDate;
+
+    private String lastAuditMessage;
+
+    private String lastAuditBy;
+
+    private LocalDateTime lastAuditDate;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2019-2029 DiGuoZhiMeng(https://github.com/DiGuoZhiMeng)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package wiki.capsule.flow.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * <pre>
+ * 缩小LruCache容量时立即按最久未使用的顺序淘汰超出部分，每个被淘汰的条目都会回调evictionListener
+ * </pre>
+ *
+ * @author DiGuoZhiMeng
+ * @since 2020-06-14
+ */
+public class LruCacheTest {
+
+    @Test
+    public void shrinkEvictsLeastRecentlyUsed() {
+        List<String> evicted = new ArrayList<>();
+        LruCache<Integer> cache = new LruCache<>(4, evicted::add);
+        for (int i = 1; i <= 4; i++) {
+            cache.put("k" + i, i);
+        }
+        cache.get("k1");
+
+        cache.setMaxSize(2);
+        assertEquals(2, cache.size());
+        assertEquals(Arrays.asList("k2", "k3"), evicted);
+        assertEquals(2L, cache.getEvictionCount());
+        assertNull(cache.get("k2"));
+        assertEquals(Integer.valueOf(1), cache.get("k1"));
+
+        cache.put("k5", 5);
+        assertEquals(2, cache.size());
+        assertEquals(Arrays.asList("k2", "k3", "k4"), evicted);
+    }
+}
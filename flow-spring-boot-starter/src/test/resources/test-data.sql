@@ -0,0 +1,6 @@
+-- 并签：Pending Submit -> A&&B -> Approved
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('TEST_AND_FLOW', 'TEST_ORDER', 'Pending Submit', 'Submit', 'A&&B', '["role1"]', 1, 0);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('TEST_AND_FLOW', 'TEST_ORDER', 'A', 'Approve', 'Approved', '["roleA"]', 2, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('TEST_AND_FLOW', 'TEST_ORDER', 'B', 'Approve', 'Approved', '["roleB"]', 3, 1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('TEST_AND_FLOW', 'TEST_ORDER', 'A', 'Reject', 'Rejected', '["roleA"]', -1, -1);
+INSERT INTO flow_basic (FLOW_NAME, ENTITY_NAME, PREV_STATUS, ACTION, NEXT_STATUS, HANDLE_ROLES, TASK_ORDER, LAST_TASK) VALUES ('TEST_AND_FLOW', 'TEST_ORDER', 'B', 'Reject', 'Rejected', '["roleB"]', -2, -1);
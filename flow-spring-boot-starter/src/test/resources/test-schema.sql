@@ -0,0 +1,16 @@
+CREATE TABLE IF NOT EXISTS test_order (
+  ID bigint NOT NULL,
+  TYPE varchar(50) DEFAULT NULL,
+  AMOUNT decimal(18, 2) DEFAULT NULL,
+  AROUND_ID bigint DEFAULT NULL,
+  APPROVAL_STATUS varchar(100) DEFAULT NULL,
+  APPROVAL_STATUS_JSON varchar(1000) DEFAULT NULL,
+  VERSION int NOT NULL DEFAULT 0,
+  LAST_SUBMIT_MESSAGE varchar(1000) DEFAULT NULL,
+  LAST_SUBMIT_BY varchar(50) DEFAULT NULL,
+  LAST_SUBMIT_DATE timestamp DEFAULT NULL,
+  LAST_AUDIT_MESSAGE varchar(1000) DEFAULT NULL,
+  LAST_AUDIT_BY varchar(50) DEFAULT NULL,
+  LAST_AUDIT_DATE timestamp DEFAULT NULL,
+  PRIMARY KEY (ID)
+);